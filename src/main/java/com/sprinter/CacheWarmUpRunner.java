@@ -0,0 +1,62 @@
+package com.sprinter;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.stereotype.Component;
+
+import com.sprinter.model.ProductModel;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Warms the product listing and the first
+ * sprinter.cache.warm-up.first-products products of the listing at startup.
+ * There is no access history at startup, so these are not the most read
+ * products, only the ones that come first. Runners complete before the
+ * readiness state changes to accepting traffic, so the first requests do not
+ * pay for a cold listing.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication
+public class CacheWarmUpRunner implements ApplicationRunner {
+
+	private final CacheManager cacheManager;
+	private final int firstProducts;
+
+	public CacheWarmUpRunner(CacheManager cacheManager,
+			@Value("${sprinter.cache.warm-up.first-products:1000}") int firstProducts) {
+		this.cacheManager = cacheManager;
+		this.firstProducts = Math.max(0, firstProducts);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void run(ApplicationArguments args) {
+
+		long start = System.nanoTime();
+
+		List<ProductModel> products = cacheManager.getCache(CachingConfig.PRODUCTS_CACHE).get(SimpleKey.EMPTY,
+				List.class);
+
+		Cache productCache = cacheManager.getCache(CachingConfig.PRODUCT_CACHE);
+		int warmed = Math.min(firstProducts, products.size());
+
+		for (ProductModel productModel : products.subList(0, warmed))
+			productCache.put(productModel.getId(), productModel.toBuilder().build());
+
+		log.info("Cache warmed with {} products, {} of them cached by id, in {} ms", products.size(), warmed,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+}
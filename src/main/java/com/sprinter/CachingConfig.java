@@ -1,13 +1,32 @@
 package com.sprinter;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sprinter.profiling.ProfilingCacheManager;
+import com.sprinter.service.ProductService;
+import com.sprinter.tracing.TracingCacheManager;
+
+import io.opentelemetry.api.trace.Tracer;
 
 /**
- * 
+ * The product listing is a refresh-ahead cache: once an entry is older than
+ * sprinter.cache.products.refresh-after the next read still gets the current
+ * value while it is reloaded on the cache refresh executor. It is loaded
+ * through ProductService.loadAll, the cached findAll body does not run while
+ * the cache has a value. Single products are bounded and expire, writes keep
+ * them up to date. Ids found missing are remembered for a short time. Lookups
+ * and writes are traced when tracing is enabled.
+ *
  * @author Álvaro Aglio Sánchez
  *
  */
@@ -15,8 +34,50 @@ import org.springframework.context.annotation.Configuration;
 @EnableCaching
 public class CachingConfig {
 
+	static final String PRODUCTS_CACHE = "products";
+	static final String PRODUCT_CACHE = "product";
+	static final String MISSING_PRODUCT_CACHE = "missingProduct";
+
+	@Bean
+	public ThreadPoolTaskExecutor cacheRefreshExecutor(@Value("${sprinter.cache.refresh.threads:2}") int threads) {
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(threads);
+		executor.setMaxPoolSize(threads);
+		executor.setQueueCapacity(16);
+		executor.setThreadNamePrefix("cache-refresh-");
+		executor.setDaemon(true);
+
+		return executor;
+	}
+
 	@Bean
-	public CacheManager cacheManager() {
-		return new ConcurrentMapCacheManager("products");
+	public CacheManager cacheManager(ObjectProvider<ProductService> productService,
+			ThreadPoolTaskExecutor cacheRefreshExecutor,
+			@Value("${sprinter.cache.products.refresh-after:50s}") Duration productsRefreshAfter,
+			@Value("${sprinter.cache.products.expire-after:5m}") Duration productsExpireAfter,
+			@Value("${sprinter.cache.product.expire-after:10m}") Duration productExpireAfter,
+			@Value("${sprinter.cache.product.maximum-size:10000}") long productMaximumSize,
+			@Value("${sprinter.cache.missing-product.expire-after:30s}") Duration missingProductExpireAfter,
+			@Value("${sprinter.cache.missing-product.maximum-size:100000}") long missingProductMaximumSize,
+			@Value("${sprinter.profiling.events.enabled:true}") boolean profilingEvents,
+			ObjectProvider<Tracer> tracer) {
+
+		CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+
+		cacheManager.registerCustomCache(PRODUCTS_CACHE,
+				Caffeine.newBuilder().refreshAfterWrite(productsRefreshAfter).expireAfterWrite(productsExpireAfter)
+						.executor(cacheRefreshExecutor).build(key -> productService.getObject().loadAll()));
+
+		cacheManager.registerCustomCache(PRODUCT_CACHE, Caffeine.newBuilder().expireAfterWrite(productExpireAfter)
+				.maximumSize(productMaximumSize).build());
+
+		cacheManager.registerCustomCache(MISSING_PRODUCT_CACHE, Caffeine.newBuilder()
+				.expireAfterWrite(missingProductExpireAfter).maximumSize(missingProductMaximumSize).build());
+
+		CacheManager profiledCacheManager = profilingEvents ? new ProfilingCacheManager(cacheManager) : cacheManager;
+		Tracer cacheTracer = tracer.getIfAvailable();
+
+		return cacheTracer != null ? new TracingCacheManager(profiledCacheManager, cacheTracer) : profiledCacheManager;
 	}
 }
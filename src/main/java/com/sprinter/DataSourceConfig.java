@@ -0,0 +1,178 @@
+package com.sprinter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import com.sprinter.datasource.HashShardStrategy;
+import com.sprinter.datasource.RangeShardStrategy;
+import com.sprinter.datasource.ReadYourWritesFilter;
+import com.sprinter.datasource.ReplicaRoutingDataSource;
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.datasource.ShardRoutingDataSource;
+import com.sprinter.datasource.ShardStrategy;
+import com.sprinter.deadline.DeadlineDataSource;
+import com.sprinter.tracing.TracingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.opentelemetry.api.trace.Tracer;
+
+/**
+ * The primary pool comes from spring.datasource, replicas from
+ * sprinter.datasource.replica-urls and share its driver and credentials.
+ * Read only transactions go to the replicas; without replicas everything
+ * goes to the primary. Products can instead be sharded: spring.datasource is
+ * shard 0 and sprinter.datasource.shard-urls adds the others, products are
+ * placed by a hash of the id or by id ranges. Statements are bounded by the
+ * deadline of the request they run for and traced when tracing is enabled.
+ * Every pool takes the spring.datasource.hikari settings, and is closed with
+ * the routing data source when the context closes.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Configuration
+public class DataSourceConfig {
+
+	@Bean
+	public ShardRouter shardRouter(@Value("${sprinter.datasource.shard-urls:}") List<String> shardUrls,
+			@Value("${sprinter.datasource.shard-strategy:hash}") String shardStrategy,
+			@Value("${sprinter.datasource.shard-range-bounds:}") long[] shardRangeBounds,
+			@Value("${sprinter.datasource.shard-threads:0}") int shardThreads) {
+
+		int shardCount = 1 + urls(shardUrls).size();
+		ShardStrategy strategy;
+
+		if ("range".equals(shardStrategy)) {
+
+			strategy = new RangeShardStrategy(shardRangeBounds);
+
+			if (strategy.getShardCount() != shardCount)
+				throw new IllegalArgumentException(shardCount + " shards need " + (shardCount - 1)
+						+ " range bounds, got " + shardRangeBounds.length);
+
+		} else if ("hash".equals(shardStrategy)) {
+
+			strategy = new HashShardStrategy(shardCount);
+
+		} else {
+
+			throw new IllegalArgumentException("Unknown shard strategy: " + shardStrategy);
+
+		}
+
+		return new ShardRouter(strategy, shardThreads > 0 ? shardThreads : 2 * shardCount);
+	}
+
+	@Bean
+	@Primary
+	public DeadlineDataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource,
+			DataSourceProperties properties, ObjectProvider<Tracer> tracer) {
+
+		Tracer statementTracer = tracer.getIfAvailable();
+
+		if (statementTracer == null)
+			return new DeadlineDataSource(replicaRoutingDataSource);
+
+		return new DeadlineDataSource(new TracingDataSource(replicaRoutingDataSource, statementTracer,
+				DatabaseDriver.fromJdbcUrl(properties.determineUrl()).getId()));
+	}
+
+	@Bean
+	@ConfigurationProperties("spring.datasource.hikari")
+	public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+
+		HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		primary.setPoolName("primary");
+
+		return primary;
+	}
+
+	@Bean(destroyMethod = "close")
+	public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+			DataSourceProperties properties, Environment environment,
+			@Value("${sprinter.datasource.replica-urls:}") List<String> replicaUrls,
+			@Value("${sprinter.datasource.replica-pool-size:10}") int replicaPoolSize,
+			@Value("${sprinter.datasource.replica-validation-timeout-seconds:1}") int validationTimeoutSeconds,
+			@Value("${sprinter.datasource.shard-urls:}") List<String> shardUrls) {
+
+		Binder binder = Binder.get(environment);
+		List<DataSource> replicas = new ArrayList<>();
+
+		for (String url : urls(replicaUrls)) {
+
+			HikariDataSource replica = pool(properties, binder, url, "replica-" + replicas.size());
+			replica.setMaximumPoolSize(replicaPoolSize);
+			replica.setReadOnly(true);
+
+			replicas.add(replica);
+		}
+
+		if (urls(shardUrls).isEmpty())
+			return new ReplicaRoutingDataSource(primaryDataSource, replicas, validationTimeoutSeconds);
+
+		if (!replicas.isEmpty())
+			throw new IllegalArgumentException("Replicas cannot be combined with shards");
+
+		List<DataSource> shards = new ArrayList<>();
+		shards.add(primaryDataSource);
+
+		for (String url : urls(shardUrls))
+			shards.add(pool(properties, binder, url, "shard-" + shards.size()));
+
+		return new ReplicaRoutingDataSource(new ShardRoutingDataSource(shards), replicas, validationTimeoutSeconds);
+	}
+
+	@Bean
+	@ConditionalOnWebApplication
+	@ConditionalOnProperty(name = "sprinter.datasource.read-your-writes.enabled", matchIfMissing = true)
+	public ReadYourWritesFilter readYourWritesFilter(
+			@Value("${sprinter.datasource.read-your-writes.window-ms:2000}") long windowMillis) {
+		return new ReadYourWritesFilter(windowMillis);
+	}
+
+	/**
+	 * The spring.datasource.hikari settings are bound first, the url and the
+	 * pool name of the replica or shard win over them
+	 */
+	private static HikariDataSource pool(DataSourceProperties properties, Binder binder, String url, String name) {
+
+		HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+				.driverClassName(properties.determineDriverClassName()).username(properties.determineUsername())
+				.password(properties.determinePassword()).build();
+		binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+		dataSource.setJdbcUrl(url);
+		dataSource.setPoolName(name);
+
+		return dataSource;
+	}
+
+	private static List<String> urls(List<String> urls) {
+
+		List<String> trimmed = new ArrayList<>();
+
+		for (String url : urls) {
+			if (!url.trim().isEmpty())
+				trimmed.add(url.trim());
+		}
+
+		return trimmed;
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.sprinter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.sprinter.model.ExportFormat;
+import com.sprinter.service.ProductExportService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Command line export mode, e.g.
+ * {@code java -jar sprinter-service.jar --sprinter.export.file=products.csv --sprinter.export.format=csv}
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("sprinter.export.file")
+public class ProductExportRunner implements ApplicationRunner {
+
+	static final String EXPORT_FILE_PROPERTY = "sprinter.export.file";
+
+	private final ProductExportService productExportService;
+	private final Path file;
+	private final ExportFormat format;
+
+	public ProductExportRunner(ProductExportService productExportService,
+			@Value("${" + EXPORT_FILE_PROPERTY + "}") String file,
+			@Value("${sprinter.export.format:ndjson}") String format) {
+		this.productExportService = productExportService;
+		this.file = Paths.get(file);
+		this.format = ExportFormat.fromValue(format);
+	}
+
+	/**
+	 * Method to check if the application was launched to export the catalogue
+	 * 
+	 * @param args String[]
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isExportMode(String[] args) {
+
+		for (String arg : args) {
+			if (arg.startsWith("--" + EXPORT_FILE_PROPERTY + "="))
+				return true;
+		}
+
+		return false;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws Exception {
+
+		long start = System.nanoTime();
+		long exported = productExportService.export(format, file);
+
+		log.info("Exported {} products to {} in {} ms", exported, file, (System.nanoTime() - start) / 1_000_000);
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.sprinter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import com.sprinter.controller.ProductGrpcService;
+import com.sprinter.persistence.id.ProductIdGenerator;
+import com.sprinter.service.ProductService;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves the product API over gRPC on Netty next to the REST API. It starts
+ * with the embedded web server, so it does not start in export mode or in
+ * tests with a mock servlet environment. A caller multiplexes its calls over
+ * one HTTP/2 connection, the handlers run on a bounded pool because they
+ * block on the database.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "sprinter.grpc.enabled", matchIfMissing = true)
+public class ProductGrpcServer implements ApplicationListener<WebServerInitializedEvent>, DisposableBean {
+
+	private final ProductService productService;
+	private final boolean serverAssignedIds;
+	private final int port;
+	private final int threads;
+	private final int maxConcurrentCallsPerConnection;
+	private final long shutdownGraceMillis;
+
+	private ExecutorService executor;
+	private Server server;
+
+	public ProductGrpcServer(ProductService productService, ObjectProvider<ProductIdGenerator> productIdGenerator,
+			@Value("${sprinter.grpc.port:9090}") int port, @Value("${sprinter.grpc.threads:50}") int threads,
+			@Value("${sprinter.grpc.max-concurrent-calls-per-connection:100}") int maxConcurrentCallsPerConnection,
+			@Value("${sprinter.grpc.shutdown-grace-ms:5000}") long shutdownGraceMillis) {
+		this.productService = productService;
+		this.serverAssignedIds = productIdGenerator.getIfAvailable() != null;
+		this.port = port;
+		this.threads = Math.max(1, threads);
+		this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+		this.shutdownGraceMillis = shutdownGraceMillis;
+	}
+
+	@Override
+	public synchronized void onApplicationEvent(WebServerInitializedEvent event) {
+
+		if (server != null || event.getApplicationContext().getServerNamespace() != null)
+			return;
+
+		AtomicInteger count = new AtomicInteger();
+
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "grpc-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try {
+
+			server = NettyServerBuilder.forPort(port).executor(executor)
+					.maxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection)
+					.addService(new ProductGrpcService(productService, serverAssignedIds)).build().start();
+
+		} catch (IOException ex) {
+
+			executor.shutdown();
+			throw new UncheckedIOException("gRPC server could not listen on port " + port, ex);
+
+		}
+
+		log.info("gRPC server started on port {}", server.getPort());
+	}
+
+	/**
+	 * Method to get the port the server listens on, -1 before it starts
+	 *
+	 * @return int
+	 */
+	public synchronized int getPort() {
+		return server != null ? server.getPort() : -1;
+	}
+
+	@Override
+	public synchronized void destroy() throws InterruptedException {
+
+		if (server == null)
+			return;
+
+		server.shutdown();
+
+		if (!server.awaitTermination(shutdownGraceMillis, TimeUnit.MILLISECONDS))
+			server.shutdownNow();
+
+		executor.shutdown();
+	}
+
+}
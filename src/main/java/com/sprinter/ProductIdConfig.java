@@ -0,0 +1,48 @@
+package com.sprinter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.persistence.id.PooledSequenceIdGenerator;
+import com.sprinter.persistence.id.ProductIdGenerator;
+import com.sprinter.persistence.id.SnowflakeIdGenerator;
+
+/**
+ * Products created without an id get one from the server when
+ * sprinter.product.id-generation is sequence or snowflake. With the default,
+ * client, ids are always chosen by the clients. Snowflake ids grow with time,
+ * so with range shards they all land on the last shard. Every instance needs
+ * its own snowflake node id, there is no default as instances sharing one
+ * would issue the same ids.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Configuration
+public class ProductIdConfig {
+
+	@Bean
+	@ConditionalOnProperty(name = "sprinter.product.id-generation", havingValue = "sequence")
+	public ProductIdGenerator sequenceIdGenerator(JdbcTemplate jdbcTemplate, ShardRouter shardRouter,
+			@Value("${sprinter.product.id-generation.sequence-name:product_id_seq}") String sequenceName,
+			@Value("${sprinter.product.id-generation.allocation-size:50}") int allocationSize) {
+		return new PooledSequenceIdGenerator(jdbcTemplate, shardRouter, sequenceName, allocationSize);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "sprinter.product.id-generation", havingValue = "snowflake")
+	public ProductIdGenerator snowflakeIdGenerator(
+			@Value("${sprinter.product.id-generation.node-id:}") String nodeId) {
+
+		if (nodeId.trim().isEmpty())
+			throw new IllegalArgumentException(
+					"sprinter.product.id-generation.node-id must be set to an id unique to this instance");
+
+		return new SnowflakeIdGenerator(Long.parseLong(nodeId.trim()));
+	}
+
+}
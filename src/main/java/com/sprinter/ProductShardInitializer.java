@@ -0,0 +1,184 @@
+package com.sprinter;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.persistence.entity.ProductEntity;
+import com.sprinter.persistence.repository.ProductRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Prepares the shards before any other runner. The schema and the seed data
+ * are only created on shard 0, so on H2 the Product table is copied to the
+ * other shards, and every row, tombstones included, is moved to the shard
+ * its id belongs to. Rebalancing the shards after the shard count or strategy
+ * changes is a scan of every id on every shard, so it only runs with
+ * sprinter.datasource.shard-rebalance.enabled or when the table was just
+ * created on a shard.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ProductShardInitializer implements ApplicationRunner {
+
+	static final int REBALANCE_PAGE_SIZE = 1000;
+
+	private final ShardRouter shardRouter;
+	private final JdbcTemplate jdbcTemplate;
+	private final ProductRepository productRepository;
+	private final boolean rebalanceEnabled;
+
+	public ProductShardInitializer(ShardRouter shardRouter, JdbcTemplate jdbcTemplate,
+			ProductRepository productRepository,
+			@Value("${sprinter.datasource.shard-rebalance.enabled:false}") boolean rebalanceEnabled) {
+		this.shardRouter = shardRouter;
+		this.jdbcTemplate = jdbcTemplate;
+		this.productRepository = productRepository;
+		this.rebalanceEnabled = rebalanceEnabled;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+
+		if (shardRouter.getShardCount() == 1)
+			return;
+
+		if (copySchema() || rebalanceEnabled)
+			rebalance();
+	}
+
+	/**
+	 * Method to create the Product table on the H2 shards missing it
+	 *
+	 * @return boolean true if a table was created
+	 */
+	private boolean copySchema() {
+
+		String database = shardRouter.on(0, () -> jdbcTemplate
+				.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+
+		if (!"H2".equals(database)) {
+			log.info("Shards on {} must be created with the Product table", database);
+			return false;
+		}
+
+		List<String> script = shardRouter.on(0,
+				() -> jdbcTemplate.queryForList("script nodata nopasswords nosettings table Product", String.class));
+		boolean created = false;
+
+		for (int shard = 1; shard < shardRouter.getShardCount(); shard++) {
+
+			if (shardRouter.on(shard, this::hasProductTable))
+				continue;
+
+			shardRouter.on(shard, () -> {
+				for (String statement : script) {
+					if (!statement.startsWith("CREATE USER"))
+						jdbcTemplate.execute(statement);
+				}
+				return null;
+			});
+
+			log.info("Product table created on shard {}", shard);
+			created = true;
+		}
+
+		return created;
+	}
+
+	private boolean hasProductTable() {
+
+		return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+			try (ResultSet tables = connection.getMetaData().getTables(null, null, "PRODUCT", null)) {
+				return tables.next();
+			}
+		});
+	}
+
+	/**
+	 * Every shard is scanned in pages of ids, only the misplaced rows are
+	 * loaded. Rows are inserted on their shard before they are deleted from
+	 * the wrong one, so a product is never missing from every shard.
+	 */
+	private void rebalance() {
+
+		long moved = 0;
+
+		for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+
+			long afterId = Long.MIN_VALUE;
+			List<Long> ids;
+
+			do {
+
+				long pageAfterId = afterId;
+				ids = shardRouter.on(shard,
+						() -> productRepository.findRowIdsAfter(pageAfterId, REBALANCE_PAGE_SIZE));
+
+				if (ids.isEmpty())
+					break;
+
+				afterId = ids.get(ids.size() - 1);
+				moved += move(shard, ids);
+
+			} while (ids.size() == REBALANCE_PAGE_SIZE);
+		}
+
+		if (moved > 0)
+			log.info("Moved {} products to their shards", moved);
+	}
+
+	private long move(int current, List<Long> ids) {
+
+		List<Long> misplacedIds = new ArrayList<>();
+
+		for (Long id : ids) {
+			if (shardRouter.shardOf(id) != current)
+				misplacedIds.add(id);
+		}
+
+		if (misplacedIds.isEmpty())
+			return 0;
+
+		List<ProductEntity> misplaced = shardRouter.on(current,
+				() -> productRepository.findRowsById(misplacedIds));
+
+		for (ProductEntity productEntity : misplaced) {
+
+			try {
+
+				shardRouter.onShardOf(productEntity.getId(),
+						() -> productRepository.insertRow(productEntity.getId(), productEntity.getName(),
+								productEntity.getDescription(), productEntity.getVersion(),
+								productEntity.getDeletedAt()));
+
+			} catch (DataIntegrityViolationException ex) {
+
+				log.warn("Product {} already on shard {}, dropping the copy on shard {}", productEntity.getId(),
+						shardRouter.shardOf(productEntity.getId()), current);
+
+			}
+
+			shardRouter.on(current, () -> productRepository.deleteRow(productEntity.getId()));
+		}
+
+		return misplacedIds.size();
+	}
+
+}
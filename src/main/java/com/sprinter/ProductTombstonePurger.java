@@ -0,0 +1,131 @@
+package com.sprinter;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.limiter.AdmissionControlInterceptor;
+import com.sprinter.persistence.repository.ProductRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Physically removes the tombstones of deleted products in bounded chunks.
+ * A run only starts, and only goes on to the next chunk, while the API has
+ * few requests in flight, so the deletes and their index maintenance happen
+ * in quiet periods. The pending and lag gauges are refreshed by the runs that
+ * are not skipped, deleted_at is indexed so their queries and the chunk
+ * lookups only read tombstones.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+public class ProductTombstonePurger {
+
+	private final ProductRepository productRepository;
+	private final ShardRouter shardRouter;
+	private final AdmissionControlInterceptor admissionControlInterceptor;
+	private final long retentionMillis;
+	private final int chunkSize;
+	private final int maxChunks;
+	private final int maxInFlight;
+
+	private final Counter purged;
+	private final AtomicLong pending = new AtomicLong();
+	private final AtomicLong lagSeconds = new AtomicLong();
+
+	public ProductTombstonePurger(ProductRepository productRepository, ShardRouter shardRouter,
+			AdmissionControlInterceptor admissionControlInterceptor, MeterRegistry meterRegistry,
+			@Value("${sprinter.purge.retention-ms:60000}") long retentionMillis,
+			@Value("${sprinter.purge.chunk-size:500}") int chunkSize,
+			@Value("${sprinter.purge.max-chunks:20}") int maxChunks,
+			@Value("${sprinter.purge.max-in-flight:5}") int maxInFlight) {
+		this.productRepository = productRepository;
+		this.shardRouter = shardRouter;
+		this.admissionControlInterceptor = admissionControlInterceptor;
+		this.retentionMillis = retentionMillis;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.maxChunks = Math.max(1, maxChunks);
+		this.maxInFlight = maxInFlight;
+
+		this.purged = Counter.builder("sprinter.purge.purged").description("Product tombstones purged")
+				.register(meterRegistry);
+		Gauge.builder("sprinter.purge.pending", pending, AtomicLong::get)
+				.description("Product tombstones waiting to be purged").register(meterRegistry);
+		Gauge.builder("sprinter.purge.lag", lagSeconds, AtomicLong::get).baseUnit("seconds")
+				.description("Age of the oldest product tombstone").register(meterRegistry);
+	}
+
+	/**
+	 * Method to purge the tombstones older than the retention, one shard after
+	 * the other
+	 *
+	 */
+	@Scheduled(fixedDelayString = "${sprinter.purge.interval-ms:60000}")
+	public void purge() {
+
+		long total = 0;
+		long pendingTotal = 0;
+		Timestamp oldest = null;
+
+		for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+
+			if (!isQuiet()) {
+				log.debug("Tombstone purge skipped, {} requests in flight", admissionControlInterceptor.getInFlight());
+				return;
+			}
+
+			total += shardRouter.on(shard, this::purgeShard);
+			pendingTotal += shardRouter.on(shard, productRepository::countTombstones);
+
+			Timestamp shardOldest = shardRouter.on(shard, productRepository::findOldestTombstone);
+
+			if (shardOldest != null && (oldest == null || shardOldest.before(oldest)))
+				oldest = shardOldest;
+		}
+
+		pending.set(pendingTotal);
+		lagSeconds.set(oldest != null ? Math.max(0, (System.currentTimeMillis() - oldest.getTime()) / 1000) : 0);
+
+		if (total > 0)
+			log.info("Purged {} product tombstones, {} pending", total, pending.get());
+	}
+
+	private long purgeShard() {
+
+		Timestamp before = new Timestamp(System.currentTimeMillis() - retentionMillis);
+		long total = 0;
+
+		for (int chunk = 0; chunk < maxChunks; chunk++) {
+
+			List<Long> ids = productRepository.findTombstoneIds(before, chunkSize);
+
+			if (ids.isEmpty())
+				break;
+
+			int deleted = productRepository.purgeTombstones(ids);
+			purged.increment(deleted);
+			total += deleted;
+
+			if (ids.size() < chunkSize || !isQuiet())
+				break;
+		}
+
+		return total;
+	}
+
+	private boolean isQuiet() {
+		return admissionControlInterceptor.getInFlight() <= maxInFlight;
+	}
+
+}
@@ -1,13 +1,38 @@
 package com.sprinter;
 
+import java.time.Duration;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.filter.IdempotencyFilter;
+import com.sprinter.filter.MdcTaskWrapping;
+import com.sprinter.persistence.id.ProductIdGenerator;
+import com.sprinter.persistence.repository.ProductJdbcRepository;
 import com.sprinter.persistence.repository.ProductRepository;
+import com.sprinter.service.ProductExportService;
+import com.sprinter.service.ProductImportService;
 import com.sprinter.service.ProductService;
+import com.sprinter.service.impl.ProductExportServiceImpl;
+import com.sprinter.service.impl.ProductIdFilter;
+import com.sprinter.service.impl.ProductImportServiceImpl;
 import com.sprinter.service.impl.ProductServiceImpl;
 
 /**
@@ -21,12 +46,120 @@ import com.sprinter.service.impl.ProductServiceImpl;
 public class SprinterApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(SprinterApplication.class, args);
+
+		SpringApplication application = new SpringApplication(SprinterApplication.class);
+
+		if (!ProductExportRunner.isExportMode(args)) {
+			application.run(args);
+			return;
+		}
+
+		application.setWebApplicationType(WebApplicationType.NONE);
+		ConfigurableApplicationContext context = application.run(args);
+		System.exit(SpringApplication.exit(context));
+	}
+
+	@Bean
+	public ProductJdbcRepository productJdbcRepository(JdbcTemplate jdbcTemplate) {
+		return new ProductJdbcRepository(jdbcTemplate);
+	}
+
+	@Bean
+	@ConditionalOnWebApplication
+	@ConditionalOnProperty(name = "sprinter.idempotency.enabled", matchIfMissing = true)
+	public IdempotencyFilter idempotencyFilter(@Value("${sprinter.idempotency.ttl:24h}") Duration ttl,
+			@Value("${sprinter.idempotency.max-keys:100000}") long maxKeys,
+			@Value("${sprinter.idempotency.max-body-bytes:65536}") int maxBodyBytes,
+			@Value("${sprinter.idempotency.wait-ms:30000}") long waitMillis) {
+		return new IdempotencyFilter(ttl, maxKeys, maxBodyBytes, waitMillis);
+	}
+
+	@Bean
+	@ConditionalOnProperty(name = "sprinter.product.id-filter.enabled")
+	public ProductIdFilter productIdFilter(
+			@Value("${sprinter.product.id-filter.expected-insertions:100000}") int expectedInsertions,
+			@Value("${sprinter.product.id-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+		return new ProductIdFilter(expectedInsertions, falsePositiveRate);
+	}
+
+	@Bean
+	public ProductService productService(ProductRepository productRepository,
+			ProductJdbcRepository productJdbcRepository, ObjectProvider<CacheManager> cacheManager,
+			ObjectProvider<ProductIdFilter> productIdFilter, PlatformTransactionManager transactionManager,
+			ObjectProvider<ShardRouter> shardRouter, ObjectProvider<ProductIdGenerator> productIdGenerator,
+			@Value("${sprinter.product.update-retry-attempts:3}") int updateRetryAttempts,
+			@Value("${sprinter.catalogue.snapshot.enabled:false}") boolean snapshotEnabled) {
+
+		ProductServiceImpl productService = new ProductServiceImpl(productRepository, productJdbcRepository);
+		productService.setUpdateRetryAttempts(updateRetryAttempts);
+		productService.setSnapshotEnabled(snapshotEnabled);
+		productService.setTransactionTemplate(new TransactionTemplate(transactionManager));
+		cacheManager.ifAvailable(manager -> {
+			productService.setProductCache(manager.getCache("product"));
+			productService.setMissingProductCache(manager.getCache("missingProduct"));
+		});
+		productIdFilter.ifAvailable(productService::setProductIdFilter);
+		shardRouter.ifAvailable(productService::setShardRouter);
+		productIdGenerator.ifAvailable(productService::setProductIdGenerator);
+
+		return productService;
+	}
+
+	/**
+	 * Method to create the pool every export reads and encodes its chunks on,
+	 * so concurrent exports share a fixed number of threads
+	 *
+	 * @param threads int
+	 *
+	 * @return ThreadPoolTaskExecutor
+	 */
+	@Bean
+	public ThreadPoolTaskExecutor productExportExecutor(@Value("${sprinter.export.threads:0}") int threads) {
+
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setThreadNamePrefix("export-");
+		executor.setDaemon(true);
+		executor.setTaskDecorator(MdcTaskWrapping::wrap);
+
+		return executor;
+	}
+
+	@Bean
+	public ProductExportService productExportService(ProductRepository productRepository,
+			ThreadPoolTaskExecutor productExportExecutor, ObjectProvider<ShardRouter> shardRouter,
+			@Value("${sprinter.export.chunk-size:1000}") int chunkSize,
+			@Value("${sprinter.export.parallelism:0}") int parallelism) {
+
+		ProductExportServiceImpl productExportService = new ProductExportServiceImpl(productRepository,
+				productExportExecutor.getThreadPoolExecutor(), chunkSize,
+				parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+		shardRouter.ifAvailable(productExportService::setShardRouter);
+
+		return productExportService;
 	}
 
 	@Bean
-	public ProductService productService(ProductRepository productRepository) {
-		return new ProductServiceImpl(productRepository);
+	public ProductImportService productImportService(ProductRepository productRepository,
+			EntityManager entityManager, PlatformTransactionManager transactionManager,
+			@Value("${sprinter.import.batch-size:500}") int batchSize,
+			@Value("${sprinter.import.queue-capacity:4}") int queueCapacity,
+			ObjectProvider<ProductIdFilter> productIdFilter, ObjectProvider<ShardRouter> shardRouter,
+			ObjectProvider<ProductIdGenerator> productIdGenerator, ObjectProvider<ProductService> productService,
+			ObjectProvider<CacheManager> cacheManager) {
+
+		ProductImportServiceImpl productImportService = new ProductImportServiceImpl(productRepository, entityManager,
+				new TransactionTemplate(transactionManager), batchSize, queueCapacity);
+		productIdFilter.ifAvailable(productImportService::setProductIdFilter);
+		shardRouter.ifAvailable(productImportService::setShardRouter);
+		productIdGenerator.ifAvailable(productImportService::setProductIdGenerator);
+		productService.ifAvailable(productImportService::setProductService);
+		cacheManager.ifAvailable(productImportService::setCacheManager);
+
+		return productImportService;
 	}
 
 }
@@ -0,0 +1,95 @@
+package com.sprinter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reports startup time and resident memory per launch mode once the
+ * application is ready. With sprinter.startup.exit-after-ready it exits right
+ * away, which is what the CDS training run uses.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+public class StartupReporter implements ApplicationListener<ApplicationReadyEvent> {
+
+	static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+	private final MeterRegistry meterRegistry;
+	private final boolean exitAfterReady;
+
+	public StartupReporter(MeterRegistry meterRegistry,
+			@Value("${sprinter.startup.exit-after-ready:false}") boolean exitAfterReady) {
+		this.meterRegistry = meterRegistry;
+		this.exitAfterReady = exitAfterReady;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationReadyEvent event) {
+
+		long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+		long rssBytes = residentSetBytes();
+		String mode = launchMode();
+
+		log.info("Ready in {} ms since JVM start, mode={}, rss={} MB", uptimeMillis, mode, rssBytes >> 20);
+
+		Gauge.builder("sprinter.startup.time", () -> uptimeMillis).tag("mode", mode).baseUnit("milliseconds")
+				.register(meterRegistry);
+		Gauge.builder("sprinter.startup.rss", () -> rssBytes).tag("mode", mode).baseUnit("bytes")
+				.register(meterRegistry);
+
+		if (exitAfterReady)
+			System.exit(SpringApplication.exit(event.getApplicationContext()));
+	}
+
+	private String launchMode() {
+
+		List<String> arguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+
+		for (String argument : arguments) {
+			if (argument.startsWith("-XX:ArchiveClassesAtExit"))
+				return "cds-training";
+			if (argument.startsWith("-XX:SharedArchiveFile"))
+				return "cds";
+		}
+
+		return "jit";
+	}
+
+	private long residentSetBytes() {
+
+		if (!Files.isReadable(PROC_STATUS))
+			return -1;
+
+		try {
+
+			for (String line : Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8)) {
+				if (line.startsWith("VmRSS:"))
+					return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+			}
+
+		} catch (IOException | NumberFormatException ex) {
+			log.debug("Unable to read resident set size", ex);
+		}
+
+		return -1;
+	}
+
+}
@@ -0,0 +1,119 @@
+package com.sprinter;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.sprinter.tracing.TracingAspect;
+import com.sprinter.tracing.TracingCallableInterceptor;
+import com.sprinter.tracing.TracingFilter;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+/**
+ * With sprinter.tracing.enabled requests are traced with OpenTelemetry: a
+ * server span per request continuing the W3C trace context of the caller,
+ * and spans for the product controller and service, the caches and every
+ * SQL statement. A share of the traces given by
+ * sprinter.tracing.sampling-ratio is recorded: the ratio applies to new
+ * traces and to the ones a caller marked as sampled, so no caller can force
+ * full-rate recording, while a trace the caller did not sample stays off.
+ * Spans are sent in batches over OTLP/gRPC, on a channel of the gRPC
+ * transport the server already uses.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Configuration
+@ConditionalOnProperty(name = "sprinter.tracing.enabled")
+public class TracingConfig {
+
+	static final String INSTRUMENTATION_NAME = "com.sprinter";
+
+	@Bean
+	public ManagedChannel otlpChannel(
+			@Value("${sprinter.tracing.otlp.endpoint:http://localhost:4317}") URI endpoint) {
+
+		NettyChannelBuilder channel = NettyChannelBuilder.forAddress(endpoint.getHost(), endpoint.getPort());
+
+		if ("https".equals(endpoint.getScheme()))
+			channel.useTransportSecurity();
+		else
+			channel.usePlaintext();
+
+		return channel.build();
+	}
+
+	@Bean
+	public OpenTelemetrySdk openTelemetry(ManagedChannel otlpChannel,
+			@Value("${spring.application.name:sprinter}") String serviceName,
+			@Value("${sprinter.tracing.otlp.timeout:10s}") Duration timeout,
+			@Value("${sprinter.tracing.sampling-ratio:0.1}") double samplingRatio,
+			@Value("${sprinter.tracing.export.schedule-delay:5s}") Duration scheduleDelay,
+			@Value("${sprinter.tracing.export.max-queue-size:2048}") int maxQueueSize) {
+
+		/*
+		 * setChannel is deprecated in favour of setEndpoint, but setEndpoint
+		 * only works with the OkHttp sender. The OkHttp sender is excluded to
+		 * keep the gRPC transport the server already uses, and the gRPC
+		 * managed channel sender of this version cannot build a channel of
+		 * its own: it needs one given through setChannel.
+		 */
+		@SuppressWarnings("deprecation")
+		OtlpGrpcSpanExporter exporter = OtlpGrpcSpanExporter.builder().setChannel(otlpChannel).setTimeout(timeout)
+				.build();
+
+		Sampler ratioSampler = Sampler.traceIdRatioBased(samplingRatio);
+
+		SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+				.setResource(Resource.getDefault()
+						.merge(Resource.create(Attributes.builder().put("service.name", serviceName).build())))
+				.setSampler(Sampler.parentBasedBuilder(ratioSampler).setRemoteParentSampled(ratioSampler).build())
+				.addSpanProcessor(BatchSpanProcessor.builder(exporter).setScheduleDelay(scheduleDelay)
+						.setMaxQueueSize(maxQueueSize).build())
+				.build();
+
+		return OpenTelemetrySdk.builder().setTracerProvider(tracerProvider)
+				.setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance())).build();
+	}
+
+	@Bean
+	public Tracer tracer(OpenTelemetry openTelemetry) {
+		return openTelemetry.getTracer(INSTRUMENTATION_NAME);
+	}
+
+	@Bean
+	public TracingAspect tracingAspect(Tracer tracer) {
+		return new TracingAspect(tracer);
+	}
+
+	@Bean
+	@ConditionalOnWebApplication
+	public TracingFilter tracingFilter(OpenTelemetry openTelemetry, Tracer tracer) {
+		return new TracingFilter(openTelemetry, tracer);
+	}
+
+	@Bean
+	@ConditionalOnWebApplication
+	public TracingCallableInterceptor tracingCallableInterceptor() {
+		return new TracingCallableInterceptor();
+	}
+
+}
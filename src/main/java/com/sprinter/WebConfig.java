@@ -0,0 +1,46 @@
+package com.sprinter;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.sprinter.deadline.DeadlineInterceptor;
+import com.sprinter.filter.MdcCallableInterceptor;
+import com.sprinter.limiter.AdmissionControlInterceptor;
+import com.sprinter.tracing.TracingCallableInterceptor;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+	private final AdmissionControlInterceptor admissionControlInterceptor;
+	private final DeadlineInterceptor deadlineInterceptor;
+	private final ObjectProvider<TracingCallableInterceptor> tracingCallableInterceptor;
+
+	public WebConfig(AdmissionControlInterceptor admissionControlInterceptor,
+			DeadlineInterceptor deadlineInterceptor,
+			ObjectProvider<TracingCallableInterceptor> tracingCallableInterceptor) {
+		this.admissionControlInterceptor = admissionControlInterceptor;
+		this.deadlineInterceptor = deadlineInterceptor;
+		this.tracingCallableInterceptor = tracingCallableInterceptor;
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(admissionControlInterceptor).addPathPatterns("/api/**");
+		registry.addInterceptor(deadlineInterceptor).addPathPatterns("/api/**");
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.registerCallableInterceptors(deadlineInterceptor, new MdcCallableInterceptor());
+		tracingCallableInterceptor.ifAvailable(configurer::registerCallableInterceptors);
+	}
+
+}
@@ -1,78 +1,271 @@
 package com.sprinter.controller;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sprinter.deadline.Deadline;
+import com.sprinter.deadline.RequestTimeout;
+import com.sprinter.exception.BadRequestException;
 import com.sprinter.exception.ConflictException;
+import com.sprinter.exception.DeadlineExceededException;
 import com.sprinter.exception.NotFoundException;
+import com.sprinter.model.ExportFormat;
+import com.sprinter.model.ImportReportModel;
+import com.sprinter.model.ProductLookupModel;
 import com.sprinter.model.ProductModel;
+import com.sprinter.model.ProductStatsModel;
+import com.sprinter.service.ProductExportService;
+import com.sprinter.service.ProductImportService;
 import com.sprinter.service.ProductService;
 
-import lombok.extern.java.Log;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * 
  * @author Álvaro Aglio Sánchez
  *
  */
-@Log
+@Slf4j
 @RestController
 @RequestMapping("/api/product")
 public class ProductApiController {
 
-	private static final Logger LOGGER = LoggerFactory.getLogger(ProductApiController.class);
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
 	@Autowired
 	private ProductService productService;
 
 	@Autowired
-	private CacheManager cacheManager;
+	private ProductExportService productExportService;
+
+	@Autowired
+	private ProductImportService productImportService;
 
 	/**
-	 * Method to clear cache
+	 * Method to find all products
 	 * 
+	 * @return ResponseEntity List<ProductModel>
 	 */
-	@Scheduled(cron = "0 0/1 * * * ?")
-	public void clearCacheSchedule() {
-		for (String name : cacheManager.getCacheNames()) {
-			cacheManager.getCache(name).clear();
+	@GetMapping
+	public ResponseEntity<List<ProductModel>> findAll() {
+
+		log.debug("Find all products");
+
+		try {
+
+			return new ResponseEntity<List<ProductModel>>(productService.findAll(), HttpStatus.OK);
+
+		} catch (Exception ex) {
+
+			throw serverError(ex);
+
 		}
 	}
 
 	/**
-	 * Method to find all products
+	 * Method to find a page of products ordered by id, the next page starts
+	 * after the last id returned
+	 * 
+	 * @param after long
+	 * @param limit int
 	 * 
 	 * @return ResponseEntity List<ProductModel>
 	 */
-	@GetMapping
-	public ResponseEntity<List<ProductModel>> findAll() {
+	@GetMapping(params = "limit")
+	public ResponseEntity<List<ProductModel>> findPage(@RequestParam(defaultValue = "0") long after,
+			@RequestParam int limit) {
 
-		log.info("Find all products");
+		log.debug("Find {} products after {}", limit, after);
 
 		try {
 
-			return new ResponseEntity<List<ProductModel>>(productService.findAll(), HttpStatus.OK);
+			return new ResponseEntity<List<ProductModel>>(productService.findPage(after, limit), HttpStatus.OK);
+
+		} catch (BadRequestException ex) {
+
+			log.warn("Invalid product page");
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exception ", ex);
+
+		} catch (Exception ex) {
+
+			throw serverError(ex);
+
+		}
+	}
+
+	/**
+	 * Method to find many products by id
+	 * 
+	 * @param ids List<Long>
+	 * 
+	 * @return ResponseEntity ProductLookupModel
+	 */
+	@GetMapping(params = "ids")
+	public ResponseEntity<ProductLookupModel> findAllById(@RequestParam List<Long> ids) {
+		return lookup(ids);
+	}
+
+	/**
+	 * Method to find many products by id sent in the body
+	 * 
+	 * @param ids List<Long>
+	 * 
+	 * @return ResponseEntity ProductLookupModel
+	 */
+	@PostMapping("/lookup")
+	public ResponseEntity<ProductLookupModel> lookup(@RequestBody List<Long> ids) {
+
+		log.debug("Lookup {} products", ids.size());
+
+		try {
+
+			return new ResponseEntity<ProductLookupModel>(productService.findAllById(ids), HttpStatus.OK);
+
+		} catch (BadRequestException ex) {
+
+			log.warn("Invalid product lookup");
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exception ", ex);
+
+		} catch (Exception ex) {
+
+			throw serverError(ex);
+
+		}
+	}
+
+	/**
+	 * Method to stream all products written straight from the database rows
+	 * 
+	 * @return ResponseEntity StreamingResponseBody
+	 */
+	@GetMapping(params = "stream=true")
+	@RequestTimeout("${sprinter.deadline.stream-ms:300000}")
+	public ResponseEntity<StreamingResponseBody> streamAll() {
+
+		log.debug("Stream all products");
+
+		StreamingResponseBody body = outputStream -> {
+			try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream)) {
+				productService.writeAll(generator);
+			}
+		};
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+	}
+
+	/**
+	 * Method to find a product by id written straight from the database row
+	 * 
+	 * @param id long
+	 * 
+	 * @return ResponseEntity byte[]
+	 */
+	@GetMapping(value = "/{id}", params = "stream=true")
+	public ResponseEntity<byte[]> streamById(@PathVariable long id) {
+
+		log.debug("Stream product by id: {}", id);
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+		boolean found;
+
+		try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream)) {
+
+			found = productService.writeById(id, generator);
+
+		} catch (Exception ex) {
+
+			throw serverError(ex);
+
+		}
+
+		if (!found) {
+			log.warn("Product not found");
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Exception ");
+		}
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(outputStream.toByteArray());
+	}
+
+	/**
+	 * Method to export all products as a gzip stream
+	 * 
+	 * @param format String ndjson or csv
+	 * 
+	 * @return ResponseEntity StreamingResponseBody
+	 */
+	@GetMapping("/export")
+	@RequestTimeout("${sprinter.deadline.stream-ms:300000}")
+	public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+
+		log.debug("Export products as {}", format);
+
+		ExportFormat exportFormat;
+
+		try {
+
+			exportFormat = ExportFormat.fromValue(format);
+
+		} catch (IllegalArgumentException ex) {
+
+			log.warn("Unsupported export format");
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exception ", ex);
+
+		}
+
+		StreamingResponseBody body = outputStream -> {
+			try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 64 * 1024)) {
+				productExportService.export(exportFormat, gzipOutputStream);
+			}
+		};
+
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+				.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+				.header(HttpHeaders.CONTENT_DISPOSITION,
+						"attachment; filename=\"products." + exportFormat.getExtension() + "\"")
+				.body(body);
+	}
+
+	/**
+	 * Method to get the product count and aggregate statistics
+	 * 
+	 * @return ResponseEntity ProductStatsModel
+	 */
+	@GetMapping("/stats")
+	public ResponseEntity<ProductStatsModel> stats() {
+
+		log.debug("Get product statistics");
+
+		try {
+
+			return new ResponseEntity<ProductStatsModel>(productService.stats(), HttpStatus.OK);
 
 		} catch (Exception ex) {
 
-			log.severe("Internar server error");
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Exception ", ex);
+			throw serverError(ex);
 
 		}
 	}
@@ -87,7 +280,7 @@ public class ProductApiController {
 	@GetMapping("/{id}")
 	public ResponseEntity<ProductModel> findById(@PathVariable long id) {
 
-		log.info("Find product by id: " + id);
+		log.debug("Find product by id: {}", id);
 
 		try {
 
@@ -95,13 +288,12 @@ public class ProductApiController {
 
 		} catch (NotFoundException ex) {
 
-			log.severe("Product not found");
+			log.warn("Product not found");
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Exception ", ex);
 
 		} catch (Exception ex) {
 
-			log.severe("Internar server error");
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Exception ", ex);
+			throw serverError(ex);
 
 		}
 	}
@@ -116,7 +308,7 @@ public class ProductApiController {
 	@PostMapping
 	public ResponseEntity<ProductModel> create(@RequestBody ProductModel productModel) {
 
-		log.info("Creating product with id: " + productModel.getId());
+		log.debug("Creating product with id: {}", productModel.getId());
 
 		try {
 
@@ -124,13 +316,42 @@ public class ProductApiController {
 
 		} catch (ConflictException ex) {
 
-			log.severe("Product already exist");
+			log.warn("Product already exist");
 			throw new ResponseStatusException(HttpStatus.CONFLICT, "Exception ", ex);
 
 		} catch (Exception ex) {
 
-			log.severe("Internar server error");
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Exception ", ex);
+			throw serverError(ex);
+
+		}
+	}
+
+	/**
+	 * Method to import products from a streamed NDJSON or CSV body
+	 * 
+	 * @param contentType String
+	 * @param inputStream InputStream
+	 * 
+	 * @return ResponseEntity ImportReportModel
+	 */
+	@PostMapping(value = "/import", consumes = { "application/x-ndjson", "text/csv" })
+	@RequestTimeout("${sprinter.deadline.import-ms:600000}")
+	public ResponseEntity<ImportReportModel> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+			InputStream inputStream) {
+
+		log.debug("Importing products from {}", contentType);
+
+		ExportFormat format = MediaType.parseMediaType(contentType).getSubtype().equals("csv") ? ExportFormat.CSV
+				: ExportFormat.NDJSON;
+
+		try {
+
+			return new ResponseEntity<ImportReportModel>(productImportService.importProducts(format, inputStream),
+					HttpStatus.OK);
+
+		} catch (Exception ex) {
+
+			throw serverError(ex);
 
 		}
 	}
@@ -145,7 +366,7 @@ public class ProductApiController {
 	@PutMapping
 	public ResponseEntity<ProductModel> update(@RequestBody ProductModel productModel) {
 
-		log.info("Updating product with id: " + productModel.getId());
+		log.debug("Updating product with id: {}", productModel.getId());
 
 		try {
 
@@ -153,13 +374,56 @@ public class ProductApiController {
 
 		} catch (NotFoundException ex) {
 
-			log.severe("Product not found");
+			log.warn("Product not found");
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Exception ", ex);
 
+		} catch (ConflictException ex) {
+
+			log.warn("Product version conflict");
+			throw new ResponseStatusException(HttpStatus.CONFLICT, "Exception ", ex);
+
 		} catch (Exception ex) {
 
-			log.severe("Internar server error");
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Exception ", ex);
+			throw serverError(ex);
+
+		}
+	}
+
+	/**
+	 * Method to partially update a product with a JSON merge patch
+	 * 
+	 * @param id    long
+	 * @param patch Map<String, Object>
+	 * 
+	 * @return ResponseEntity ProductModel
+	 */
+	@PatchMapping(value = "/{id}", consumes = { "application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE })
+	public ResponseEntity<ProductModel> patch(@PathVariable long id, @RequestBody Map<String, Object> patch) {
+
+		log.debug("Patching product with id: {}", id);
+
+		try {
+
+			return new ResponseEntity<ProductModel>(productService.patch(id, patch), HttpStatus.OK);
+
+		} catch (NotFoundException ex) {
+
+			log.warn("Product not found");
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Exception ", ex);
+
+		} catch (ConflictException ex) {
+
+			log.warn("Product version conflict");
+			throw new ResponseStatusException(HttpStatus.CONFLICT, "Exception ", ex);
+
+		} catch (BadRequestException ex) {
+
+			log.warn("Invalid product patch");
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exception ", ex);
+
+		} catch (Exception ex) {
+
+			throw serverError(ex);
 
 		}
 	}
@@ -174,7 +438,7 @@ public class ProductApiController {
 	@DeleteMapping("/{id}")
 	public ResponseEntity<HttpStatus> deleteById(@PathVariable long id) {
 
-		log.info("Deleting product with id: " + id);
+		log.debug("Deleting product with id: {}", id);
 
 		try {
 
@@ -183,14 +447,30 @@ public class ProductApiController {
 
 		} catch (NotFoundException ex) {
 
-			log.severe("Product not found");
+			log.warn("Product not found");
 			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Exception ", ex);
 
 		} catch (Exception ex) {
 
-			log.severe("Internar server error");
-			throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Exception ", ex);
+			throw serverError(ex);
 
 		}
 	}
+
+	/**
+	 * A request past its deadline is answered 504, whatever exception its
+	 * cancelled work ended with
+	 */
+	private static ResponseStatusException serverError(Exception ex) {
+
+		Deadline deadline = Deadline.current();
+
+		if (ex instanceof DeadlineExceededException || deadline != null && deadline.isExpired()) {
+			log.warn("Request deadline exceeded");
+			return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Exception ", ex);
+		}
+
+		log.error("Internal server error", ex);
+		return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Exception ", ex);
+	}
 }
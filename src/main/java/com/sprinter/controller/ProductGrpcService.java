@@ -0,0 +1,349 @@
+package com.sprinter.controller;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.protobuf.Empty;
+import com.sprinter.exception.BadRequestException;
+import com.sprinter.exception.ConflictException;
+import com.sprinter.exception.NotFoundException;
+import com.sprinter.grpc.DeleteByIdRequest;
+import com.sprinter.grpc.FindAllRequest;
+import com.sprinter.grpc.FindByIdRequest;
+import com.sprinter.grpc.Product;
+import com.sprinter.grpc.ProductApiGrpc;
+import com.sprinter.grpc.ProductPage;
+import com.sprinter.grpc.UpsertResult;
+import com.sprinter.model.ProductModel;
+import com.sprinter.service.ProductService;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * gRPC counterpart of ProductApiController. Streams only read the next page
+ * of products once the caller can take it, so a slow caller holds no more
+ * than a page of the catalogue on the server. A page goes in one message, as
+ * every message is flushed on its own.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+public class ProductGrpcService extends ProductApiGrpc.ProductApiImplBase {
+
+	static final int PAGE_SIZE = 1000;
+
+	private final ProductService productService;
+	private final boolean serverAssignedIds;
+
+	public ProductGrpcService(ProductService productService, boolean serverAssignedIds) {
+		this.productService = productService;
+		this.serverAssignedIds = serverAssignedIds;
+	}
+
+	/**
+	 * Method to stream all products ordered by id, a page is read when the
+	 * previous one was sent
+	 *
+	 * @param request          FindAllRequest
+	 * @param responseObserver StreamObserver<ProductPage>
+	 */
+	@Override
+	public void findAll(FindAllRequest request, StreamObserver<ProductPage> responseObserver) {
+
+		log.debug("Stream all products");
+
+		ServerCallStreamObserver<ProductPage> responses = (ServerCallStreamObserver<ProductPage>) responseObserver;
+		CatalogueStream catalogueStream = new CatalogueStream(responses);
+
+		responses.setOnCancelHandler(catalogueStream::cancel);
+		responses.setOnReadyHandler(catalogueStream::drain);
+		catalogueStream.drain();
+	}
+
+	/**
+	 * Method to find a product by id
+	 *
+	 * @param request          FindByIdRequest
+	 * @param responseObserver StreamObserver<Product>
+	 */
+	@Override
+	public void findById(FindByIdRequest request, StreamObserver<Product> responseObserver) {
+
+		log.debug("Find product with id: {}", request.getId());
+
+		try {
+
+			reply(responseObserver, toProduct(productService.findById(request.getId())));
+
+		} catch (RuntimeException ex) {
+
+			responseObserver.onError(status(ex).asRuntimeException());
+
+		}
+	}
+
+	/**
+	 * Method to create a product
+	 *
+	 * @param request          Product
+	 * @param responseObserver StreamObserver<Product>
+	 */
+	@Override
+	public void create(Product request, StreamObserver<Product> responseObserver) {
+
+		log.debug("Creating product with id: {}", request.getId());
+
+		try {
+
+			reply(responseObserver, toProduct(productService.create(toNewProductModel(request))));
+
+		} catch (RuntimeException ex) {
+
+			responseObserver.onError(status(ex).asRuntimeException());
+
+		}
+	}
+
+	/**
+	 * Method to update a product
+	 *
+	 * @param request          Product
+	 * @param responseObserver StreamObserver<Product>
+	 */
+	@Override
+	public void update(Product request, StreamObserver<Product> responseObserver) {
+
+		log.debug("Updating product with id: {}", request.getId());
+
+		try {
+
+			reply(responseObserver, toProduct(productService.update(toProductModel(request))));
+
+		} catch (RuntimeException ex) {
+
+			responseObserver.onError(status(ex).asRuntimeException());
+
+		}
+	}
+
+	/**
+	 * Method to delete a product by id
+	 *
+	 * @param request          DeleteByIdRequest
+	 * @param responseObserver StreamObserver<Empty>
+	 */
+	@Override
+	public void deleteById(DeleteByIdRequest request, StreamObserver<Empty> responseObserver) {
+
+		log.debug("Deleting product with id: {}", request.getId());
+
+		try {
+
+			productService.deleteById(request.getId());
+			reply(responseObserver, Empty.getDefaultInstance());
+
+		} catch (RuntimeException ex) {
+
+			responseObserver.onError(status(ex).asRuntimeException());
+
+		}
+	}
+
+	/**
+	 * Method to create or update every product sent. The next product is only
+	 * requested once the result of the previous one can be sent, a product
+	 * that cannot be written gets a failed result and the stream goes on. Once
+	 * the caller cancels no more products are written.
+	 *
+	 * @param responseObserver StreamObserver<UpsertResult>
+	 *
+	 * @return StreamObserver<Product>
+	 */
+	@Override
+	public StreamObserver<Product> upsert(StreamObserver<UpsertResult> responseObserver) {
+
+		ServerCallStreamObserver<UpsertResult> responses = (ServerCallStreamObserver<UpsertResult>) responseObserver;
+		AtomicBoolean waitingForReady = new AtomicBoolean(true);
+		AtomicBoolean cancelled = new AtomicBoolean();
+
+		responses.disableAutoRequest();
+		responses.setOnCancelHandler(() -> {
+			log.debug("Upsert stream cancelled");
+			cancelled.set(true);
+		});
+		responses.setOnReadyHandler(() -> {
+			if (responses.isReady() && waitingForReady.compareAndSet(true, false))
+				responses.request(1);
+		});
+
+		return new StreamObserver<Product>() {
+
+			@Override
+			public void onNext(Product product) {
+
+				if (cancelled.get())
+					return;
+
+				responses.onNext(upsert(product));
+
+				if (responses.isReady())
+					responses.request(1);
+				else
+					waitingForReady.set(true);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				log.debug("Upsert stream failed: {}", Status.fromThrowable(throwable));
+			}
+
+			@Override
+			public void onCompleted() {
+				responses.onCompleted();
+			}
+
+		};
+	}
+
+	/**
+	 * A product with id is updated and created if it does not exist, one
+	 * without id is created
+	 */
+	private UpsertResult upsert(Product product) {
+
+		try {
+
+			if (product.getId() != 0) {
+
+				try {
+
+					return UpsertResult.newBuilder().setOutcome(UpsertResult.Outcome.UPDATED)
+							.setProduct(toProduct(productService.update(toProductModel(product)))).build();
+
+				} catch (NotFoundException ex) {
+
+					log.debug("Product {} not found, creating it", product.getId());
+
+				}
+			}
+
+			return UpsertResult.newBuilder().setOutcome(UpsertResult.Outcome.CREATED)
+					.setProduct(toProduct(productService.create(toNewProductModel(product)))).build();
+
+		} catch (RuntimeException ex) {
+
+			return UpsertResult.newBuilder().setOutcome(UpsertResult.Outcome.FAILED).setProduct(product)
+					.setError(status(ex).getDescription()).build();
+
+		}
+	}
+
+	private static <T> void reply(StreamObserver<T> responseObserver, T response) {
+		responseObserver.onNext(response);
+		responseObserver.onCompleted();
+	}
+
+	private static Status status(RuntimeException ex) {
+
+		if (ex instanceof NotFoundException)
+			return Status.NOT_FOUND.withDescription(ex.getMessage());
+
+		if (ex instanceof ConflictException)
+			return Status.ABORTED.withDescription(ex.getMessage());
+
+		if (ex instanceof BadRequestException)
+			return Status.INVALID_ARGUMENT.withDescription(ex.getMessage());
+
+		log.error("Internal server error", ex);
+
+		return Status.INTERNAL.withDescription("Internal server error");
+	}
+
+	private static Product toProduct(ProductModel productModel) {
+
+		Product.Builder product = Product.newBuilder().setId(productModel.getId())
+				.setName(productModel.getName() != null ? productModel.getName() : "")
+				.setDescription(productModel.getDescription() != null ? productModel.getDescription() : "");
+
+		if (productModel.getVersion() != null)
+			product.setVersion(productModel.getVersion());
+
+		return product.build();
+	}
+
+	/**
+	 * Without server assigned ids a product must carry its own, id 0 would be
+	 * stored as it is
+	 */
+	private ProductModel toNewProductModel(Product product) {
+
+		if (product.getId() == 0 && !serverAssignedIds)
+			throw new BadRequestException("Product id is required, the server does not assign ids");
+
+		return toProductModel(product);
+	}
+
+	private static ProductModel toProductModel(Product product) {
+		return ProductModel.builder().id(product.getId()).name(product.getName()).description(product.getDescription())
+				.version(product.hasVersion() ? product.getVersion() : null).build();
+	}
+
+	/**
+	 * Sends the catalogue page by page while the caller is ready, the call
+	 * executor runs the drains of a call one at a time
+	 */
+	private class CatalogueStream {
+
+		private final ServerCallStreamObserver<ProductPage> responses;
+
+		private long afterId = Long.MIN_VALUE;
+		private boolean done;
+
+		CatalogueStream(ServerCallStreamObserver<ProductPage> responses) {
+			this.responses = responses;
+		}
+
+		void drain() {
+
+			try {
+
+				while (!done && responses.isReady()) {
+
+					List<ProductModel> page = productService.findPage(afterId, PAGE_SIZE);
+
+					if (page.isEmpty()) {
+						done = true;
+						responses.onCompleted();
+						return;
+					}
+
+					ProductPage.Builder productPage = ProductPage.newBuilder();
+
+					for (ProductModel productModel : page)
+						productPage.addProducts(toProduct(productModel));
+
+					afterId = page.get(page.size() - 1).getId();
+					responses.onNext(productPage.build());
+				}
+
+			} catch (RuntimeException ex) {
+
+				done = true;
+				responses.onError(status(ex).asRuntimeException());
+
+			}
+		}
+
+		void cancel() {
+			log.debug("Product stream cancelled");
+			done = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.sprinter.datasource;
+
+/**
+ * Spreads ids evenly over the shards by a hash of the id, sequential ids end
+ * up on different shards so inserts are balanced
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class HashShardStrategy implements ShardStrategy {
+
+	private final int shardCount;
+
+	public HashShardStrategy(int shardCount) {
+
+		if (shardCount < 1)
+			throw new IllegalArgumentException("At least one shard is needed");
+
+		this.shardCount = shardCount;
+	}
+
+	@Override
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	@Override
+	public int shardOf(long id) {
+		return shardCount == 1 ? 0 : (int) Math.floorMod(mix(id), (long) shardCount);
+	}
+
+	/**
+	 * SplitMix64 finalizer
+	 */
+	private static long mix(long id) {
+
+		long z = id + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+		return z ^ (z >>> 31);
+	}
+
+}
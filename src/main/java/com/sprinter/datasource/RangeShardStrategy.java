@@ -0,0 +1,41 @@
+package com.sprinter.datasource;
+
+import java.util.Arrays;
+
+/**
+ * Keeps ranges of ids together, shard i stores the ids up to its upper bound
+ * and the last shard everything above the last bound. Range scans by id only
+ * touch the shards covering the range.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class RangeShardStrategy implements ShardStrategy {
+
+	private final long[] upperBounds;
+
+	public RangeShardStrategy(long[] upperBounds) {
+
+		for (int i = 1; i < upperBounds.length; i++) {
+			if (upperBounds[i] <= upperBounds[i - 1])
+				throw new IllegalArgumentException(
+						"Shard range bounds must be ascending: " + Arrays.toString(upperBounds));
+		}
+
+		this.upperBounds = upperBounds.clone();
+	}
+
+	@Override
+	public int getShardCount() {
+		return upperBounds.length + 1;
+	}
+
+	@Override
+	public int shardOf(long id) {
+
+		int index = Arrays.binarySearch(upperBounds, id);
+
+		return index >= 0 ? index : -index - 1;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.sprinter.datasource;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.sprinter.limiter.AdmissionControlInterceptor;
+
+/**
+ * Sends the reads of a client to the primary for a while after it wrote
+ * something, so it sees its own writes while the replicas catch up. Clients
+ * are told apart like in admission control, by X-Client-Id or address.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	private final long windowNanos;
+	private final ConcurrentMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+	public ReadYourWritesFilter(long windowMillis) {
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		String clientId = clientId(request);
+		Long lastWrite = lastWrites.get(clientId);
+
+		ReplicaRoutingDataSource.setPrimaryRequired(lastWrite != null && System.nanoTime() - lastWrite < windowNanos);
+
+		try {
+
+			filterChain.doFilter(request, response);
+
+		} finally {
+
+			ReplicaRoutingDataSource.setPrimaryRequired(false);
+
+			if (isWrite(request.getMethod()) && response.getStatus() < 400)
+				lastWrites.put(clientId, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Method to forget the clients whose last write is older than the window
+	 *
+	 */
+	@Scheduled(fixedDelayString = "${sprinter.datasource.read-your-writes.eviction-interval-ms:10000}")
+	public void evictExpired() {
+
+		long now = System.nanoTime();
+
+		lastWrites.values().removeIf(lastWrite -> now - lastWrite >= windowNanos);
+	}
+
+	private static boolean isWrite(String method) {
+		return !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method);
+	}
+
+	private static String clientId(HttpServletRequest request) {
+
+		String clientId = request.getHeader(AdmissionControlInterceptor.CLIENT_ID_HEADER);
+
+		return clientId != null && !clientId.isEmpty() ? clientId : request.getRemoteAddr();
+	}
+
+}
@@ -0,0 +1,217 @@
+package com.sprinter.datasource;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends the connections of read only transactions to the replicas in round
+ * robin and everything else to the primary. The physical connection is only
+ * taken on the first statement, once the transaction flags are known, so a
+ * transaction that never queries never touches a pool. A replica failing to
+ * hand out a connection or its health check is skipped until it passes the
+ * check again; with no healthy replica reads go to the primary.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements MeterBinder, Closeable {
+
+	private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+	private final DataSource primary;
+	private final List<DataSource> replicas;
+	private final int validationTimeoutSeconds;
+
+	private volatile List<DataSource> healthyReplicas;
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final LongAdder primaryConnections = new LongAdder();
+	private final LongAdder replicaConnections = new LongAdder();
+	private final LongAdder replicaFailures = new LongAdder();
+
+	public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, int validationTimeoutSeconds) {
+		this.primary = primary;
+		this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+		this.validationTimeoutSeconds = Math.max(1, validationTimeoutSeconds);
+		this.healthyReplicas = this.replicas;
+
+		setTargetDataSource(new Router());
+	}
+
+	/**
+	 * Method to send the reads of the current thread to the primary, used to
+	 * let a client read its own writes before they reach the replicas
+	 *
+	 * @param required boolean
+	 */
+	public static void setPrimaryRequired(boolean required) {
+
+		if (required)
+			PRIMARY_REQUIRED.set(Boolean.TRUE);
+		else
+			PRIMARY_REQUIRED.remove();
+	}
+
+	public int getReplicaCount() {
+		return replicas.size();
+	}
+
+	public int getHealthyReplicaCount() {
+		return healthyReplicas.size();
+	}
+
+	/**
+	 * Method to validate every replica and update the ones reads are sent to
+	 *
+	 */
+	@Scheduled(fixedDelayString = "${sprinter.datasource.replica-check-interval-ms:5000}")
+	public void checkReplicas() {
+
+		if (replicas.isEmpty())
+			return;
+
+		List<DataSource> healthy = new ArrayList<>(replicas.size());
+
+		for (int i = 0; i < replicas.size(); i++) {
+
+			if (isValid(replicas.get(i)))
+				healthy.add(replicas.get(i));
+			else
+				log.warn("Replica {} failed its health check", i);
+		}
+
+		if (healthy.size() != healthyReplicas.size())
+			log.info("{} of {} replicas healthy", healthy.size(), replicas.size());
+
+		healthyReplicas = Collections.unmodifiableList(healthy);
+	}
+
+	private boolean isValid(DataSource replica) {
+
+		try (Connection connection = replica.getConnection()) {
+
+			return connection.isValid(validationTimeoutSeconds);
+
+		} catch (SQLException ex) {
+
+			return false;
+
+		}
+	}
+
+	private synchronized void markUnhealthy(DataSource replica) {
+
+		List<DataSource> healthy = new ArrayList<>(healthyReplicas);
+
+		if (healthy.remove(replica))
+			healthyReplicas = Collections.unmodifiableList(healthy);
+	}
+
+	private DataSource route() {
+
+		if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+				|| PRIMARY_REQUIRED.get() != null)
+			return primary;
+
+		List<DataSource> healthy = healthyReplicas;
+
+		if (healthy.isEmpty())
+			return primary;
+
+		return healthy.get(Math.floorMod(next.getAndIncrement(), healthy.size()));
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+
+		FunctionCounter.builder("sprinter.datasource.connections", primaryConnections, LongAdder::sum)
+				.tag("target", "primary").description("Connections taken by target").register(registry);
+		FunctionCounter.builder("sprinter.datasource.connections", replicaConnections, LongAdder::sum)
+				.tag("target", "replica").description("Connections taken by target").register(registry);
+		FunctionCounter.builder("sprinter.datasource.replica.failures", replicaFailures, LongAdder::sum)
+				.description("Replica connections that failed and went to the primary").register(registry);
+		Gauge.builder("sprinter.datasource.replicas.healthy", this, ReplicaRoutingDataSource::getHealthyReplicaCount)
+				.description("Replicas receiving reads").register(registry);
+	}
+
+	@Override
+	public void close() {
+
+		List<DataSource> dataSources = new ArrayList<>(replicas);
+		dataSources.add(primary);
+
+		for (DataSource dataSource : dataSources) {
+
+			if (dataSource instanceof Closeable) {
+
+				try {
+
+					((Closeable) dataSource).close();
+
+				} catch (Exception ex) {
+
+					log.warn("Data source could not be closed", ex);
+
+				}
+			}
+		}
+	}
+
+	private class Router extends AbstractDataSource {
+
+		@Override
+		public Connection getConnection() throws SQLException {
+
+			DataSource target = route();
+
+			if (target != primary) {
+
+				try {
+
+					Connection connection = target.getConnection();
+					replicaConnections.increment();
+
+					return connection;
+
+				} catch (SQLException ex) {
+
+					replicaFailures.increment();
+					markUnhealthy(target);
+					log.warn("Replica connection failed, reading from the primary: {}", ex.getMessage());
+
+				}
+			}
+
+			primaryConnections.increment();
+
+			return primary.getConnection();
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			throw new SQLException("Routed connections use the configured credentials");
+		}
+
+	}
+
+}
@@ -0,0 +1,267 @@
+package com.sprinter.datasource;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import com.sprinter.deadline.Deadline;
+import com.sprinter.filter.MdcTaskWrapping;
+
+import io.opentelemetry.context.Context;
+
+/**
+ * Selects the shard the connections of the current thread go to. Work on
+ * one shard runs on the calling thread; work on several shards is scattered
+ * to a pool, one task per shard, so every shard gets its own transaction and
+ * connection, and the results are gathered in shard order. With a single
+ * shard everything runs on the calling thread. Scattered work keeps the
+ * deadline, the trace and the MDC of the calling thread.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ShardRouter implements Closeable {
+
+	private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+	private final ShardStrategy shardStrategy;
+	private final ExecutorService executor;
+
+	public ShardRouter(ShardStrategy shardStrategy, int threads) {
+		this.shardStrategy = shardStrategy;
+
+		if (shardStrategy.getShardCount() > 1) {
+
+			AtomicInteger count = new AtomicInteger();
+
+			this.executor = MdcTaskWrapping
+					.wrap(Context.taskWrapping(Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+						Thread thread = new Thread(runnable, "shard-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					})));
+
+		} else {
+
+			this.executor = null;
+
+		}
+	}
+
+	/**
+	 * Method to get the shard selected for the current thread, shard 0 when
+	 * none is
+	 *
+	 * @return int
+	 */
+	public static int currentShard() {
+
+		Integer shard = CURRENT_SHARD.get();
+
+		return shard != null ? shard : 0;
+	}
+
+	public int getShardCount() {
+		return shardStrategy.getShardCount();
+	}
+
+	public int shardOf(long id) {
+		return shardStrategy.shardOf(id);
+	}
+
+	/**
+	 * Method to run work against one shard on the calling thread. It has to
+	 * start before the transaction takes its connection, a transaction already
+	 * holding a connection keeps using it.
+	 *
+	 * @param shard int
+	 * @param work  Supplier<T>
+	 *
+	 * @return T
+	 */
+	public <T> T on(int shard, Supplier<T> work) {
+
+		Integer previous = CURRENT_SHARD.get();
+		CURRENT_SHARD.set(shard);
+
+		try {
+
+			return work.get();
+
+		} finally {
+
+			if (previous != null)
+				CURRENT_SHARD.set(previous);
+			else
+				CURRENT_SHARD.remove();
+		}
+	}
+
+	public <T> T onShardOf(long id, Supplier<T> work) {
+		return on(shardOf(id), work);
+	}
+
+	/**
+	 * Method to run work against every shard in parallel
+	 *
+	 * @param work IntFunction<T> called with the shard
+	 *
+	 * @return List<T> results in shard order
+	 */
+	public <T> List<T> scatter(IntFunction<T> work) {
+
+		List<Integer> shards = new ArrayList<>();
+
+		for (int shard = 0; shard < getShardCount(); shard++)
+			shards.add(shard);
+
+		return scatter(shards, work);
+	}
+
+	/**
+	 * Method to run work against some shards in parallel
+	 *
+	 * @param shards Collection<Integer>
+	 * @param work   IntFunction<T> called with the shard
+	 *
+	 * @return List<T> results in the order of the shards given
+	 */
+	public <T> List<T> scatter(Collection<Integer> shards, IntFunction<T> work) {
+
+		List<T> results = new ArrayList<>(shards.size());
+
+		if (executor == null) {
+
+			for (Integer shard : shards)
+				results.add(on(shard, () -> work.apply(shard)));
+
+			return results;
+		}
+
+		List<Future<T>> futures = new ArrayList<>(shards.size());
+		Deadline deadline = Deadline.current();
+
+		for (Integer shard : shards)
+			futures.add(executor.submit(() -> Deadline.with(deadline, () -> on(shard, () -> work.apply(shard)))));
+
+		try {
+
+			for (Future<T> future : futures)
+				results.add(future.get());
+
+		} catch (InterruptedException ex) {
+
+			futures.forEach(future -> future.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for the shards", ex);
+
+		} catch (ExecutionException ex) {
+
+			futures.forEach(future -> future.cancel(true));
+
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+
+			throw new IllegalStateException("Shard query failed", ex.getCause());
+		}
+
+		return results;
+	}
+
+	/**
+	 * Method to group items by the shard of their id
+	 *
+	 * @param items Collection<T>
+	 * @param id    ToLongFunction<T>
+	 *
+	 * @return Map<Integer, List<T>> sorted by shard
+	 */
+	public <T> Map<Integer, List<T>> partition(Collection<T> items, ToLongFunction<T> id) {
+
+		Map<Integer, List<T>> partitions = new TreeMap<>();
+
+		for (T item : items)
+			partitions.computeIfAbsent(shardOf(id.applyAsLong(item)), shard -> new ArrayList<>()).add(item);
+
+		return partitions;
+	}
+
+	/**
+	 * Method to merge lists sorted by the comparator into one sorted list, a
+	 * heap keeps the head of every list so it costs O(n log k) for k lists
+	 *
+	 * @param sorted     List<List<T>>
+	 * @param comparator Comparator<T>
+	 * @param limit      int maximum items to merge
+	 *
+	 * @return List<T>
+	 */
+	public static <T> List<T> merge(List<List<T>> sorted, Comparator<T> comparator, int limit) {
+
+		if (sorted.size() == 1)
+			return sorted.get(0).size() <= limit ? sorted.get(0) : new ArrayList<>(sorted.get(0).subList(0, limit));
+
+		PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+				(a, b) -> comparator.compare(a.head(), b.head()));
+		int total = 0;
+
+		for (List<T> list : sorted) {
+			if (!list.isEmpty())
+				heads.add(new Cursor<>(list));
+			total += list.size();
+		}
+
+		List<T> merged = new ArrayList<>(Math.min(total, limit));
+
+		while (!heads.isEmpty() && merged.size() < limit) {
+
+			Cursor<T> cursor = heads.poll();
+			merged.add(cursor.head());
+
+			if (cursor.advance())
+				heads.add(cursor);
+		}
+
+		return merged;
+	}
+
+	@Override
+	public void close() {
+
+		if (executor != null)
+			executor.shutdownNow();
+	}
+
+	private static class Cursor<T> {
+
+		private final List<T> list;
+		private int index;
+
+		Cursor(List<T> list) {
+			this.list = list;
+		}
+
+		T head() {
+			return list.get(index);
+		}
+
+		boolean advance() {
+			return ++index < list.size();
+		}
+
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.sprinter.datasource;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands out connections of the shard selected by the ShardRouter for the
+ * current thread
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+	private final List<DataSource> shards;
+
+	public ShardRoutingDataSource(List<DataSource> shards) {
+		this.shards = new ArrayList<>(shards);
+
+		Map<Object, Object> targets = new HashMap<>();
+
+		for (int shard = 0; shard < shards.size(); shard++)
+			targets.put(shard, shards.get(shard));
+
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(shards.get(0));
+		setLenientFallback(false);
+		afterPropertiesSet();
+	}
+
+	public int getShardCount() {
+		return shards.size();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return ShardRouter.currentShard();
+	}
+
+	@Override
+	public void close() {
+
+		for (DataSource shard : shards) {
+
+			if (shard instanceof Closeable) {
+
+				try {
+
+					((Closeable) shard).close();
+
+				} catch (Exception ex) {
+
+					log.warn("Shard data source could not be closed", ex);
+
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.sprinter.datasource;
+
+/**
+ * Decides which shard stores a product id
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public interface ShardStrategy {
+
+	int getShardCount();
+
+	int shardOf(long id);
+
+}
@@ -0,0 +1,184 @@
+package com.sprinter.deadline;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.sprinter.exception.DeadlineExceededException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Point in time by which a request has to be answered. The thread working on
+ * the request sees it as the current deadline, and work handed to other
+ * threads carries it along. When it passes, the statements running for the
+ * request are cancelled so their connections go back to the pool, and the
+ * next check or statement fails.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+public class Deadline {
+
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+	private final long timeoutMillis;
+	private final long expiresAtNanos;
+	private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+	private final LongAdder cancelledStatements;
+	private final ScheduledFuture<?> timer;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	private volatile boolean expired;
+
+	Deadline(long timeoutMillis, ScheduledExecutorService scheduler, LongAdder cancelledStatements) {
+		this.timeoutMillis = timeoutMillis;
+		this.expiresAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		this.cancelledStatements = cancelledStatements;
+		this.timer = scheduler.schedule(this::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Method to get the deadline of the work on the current thread, null when
+	 * there is none
+	 *
+	 * @return Deadline
+	 */
+	public static Deadline current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Method to check the deadline of the current thread, if any, has not
+	 * passed
+	 *
+	 */
+	public static void checkCurrent() {
+
+		Deadline deadline = CURRENT.get();
+
+		if (deadline != null)
+			deadline.check();
+	}
+
+	/**
+	 * Method to run work with a deadline, null for none, as the current one
+	 *
+	 * @param deadline Deadline
+	 * @param work     Supplier<T>
+	 *
+	 * @return T
+	 */
+	public static <T> T with(Deadline deadline, Supplier<T> work) {
+
+		Deadline previous = CURRENT.get();
+		set(deadline);
+
+		try {
+
+			return work.get();
+
+		} finally {
+
+			set(previous);
+
+		}
+	}
+
+	static void set(Deadline deadline) {
+
+		if (deadline != null)
+			CURRENT.set(deadline);
+		else
+			CURRENT.remove();
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public boolean isExpired() {
+		return expired || System.nanoTime() >= expiresAtNanos;
+	}
+
+	/**
+	 * Method to get the time left, never negative
+	 *
+	 * @return long milliseconds
+	 */
+	public long remainingMillis() {
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+	}
+
+	/**
+	 * Method to fail once the deadline passed
+	 *
+	 */
+	public void check() {
+
+		if (isExpired())
+			throw new DeadlineExceededException("Request deadline of " + timeoutMillis + "ms exceeded");
+	}
+
+	void register(Statement statement) {
+
+		statements.add(statement);
+
+		if (expired)
+			cancel(statement);
+	}
+
+	void unregister(Statement statement) {
+		statements.remove(statement);
+	}
+
+	/**
+	 * Method to stop the timer once the request is answered
+	 *
+	 * @return boolean false when it was already closed
+	 */
+	boolean close() {
+
+		if (!closed.compareAndSet(false, true))
+			return false;
+
+		timer.cancel(false);
+		statements.clear();
+
+		return true;
+	}
+
+	private void expire() {
+
+		expired = true;
+
+		for (Statement statement : statements)
+			cancel(statement);
+	}
+
+	private void cancel(Statement statement) {
+
+		if (!statements.remove(statement))
+			return;
+
+		try {
+
+			statement.cancel();
+			cancelledStatements.increment();
+
+		} catch (SQLException ex) {
+
+			log.debug("Statement could not be cancelled: {}", ex.getMessage());
+
+		}
+	}
+
+}
@@ -0,0 +1,193 @@
+package com.sprinter.deadline;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Gives every statement run for a request with a deadline the time left as
+ * query timeout, and registers it with the deadline so it is cancelled the
+ * moment the deadline passes. JPA queries and JdbcTemplate are both bounded
+ * this way. No statement is started once the deadline passed.
+ * <p>
+ * Some drivers, H2 among them, keep the query timeout on the connection
+ * rather than on the statement, so a connection that ran statements for a
+ * deadline gets its query timeout reset to none before it goes back to the
+ * pool.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class DeadlineDataSource extends DelegatingDataSource {
+
+	public DeadlineDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return connection(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return connection(super.getConnection(username, password));
+	}
+
+	private static Connection connection(Connection target) {
+		return (Connection) Proxy.newProxyInstance(DeadlineDataSource.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new ConnectionHandler(target));
+	}
+
+	/**
+	 * Method to get the query timeout for the time left, rounded up to whole
+	 * seconds as JDBC wants, 0 for none
+	 *
+	 * @param deadline       Deadline
+	 * @param timeoutSeconds int timeout the caller set on the statement, 0
+	 *                       for none
+	 *
+	 * @return int seconds
+	 */
+	static int queryTimeoutSeconds(Deadline deadline, int timeoutSeconds) {
+
+		int remainingSeconds = (int) Math.max(1, (deadline.remainingMillis() + 999) / 1000);
+
+		return timeoutSeconds > 0 ? Math.min(timeoutSeconds, remainingSeconds) : remainingSeconds;
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+		try {
+
+			return method.invoke(target, args);
+
+		} catch (InvocationTargetException ex) {
+
+			throw ex.getTargetException();
+
+		}
+	}
+
+	private static class ConnectionHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		private boolean queryTimeoutSet;
+
+		ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "unwrap":
+				return ((Class<?>) args[0]).isInstance(proxy) ? proxy : target.unwrap((Class<?>) args[0]);
+			case "isWrapperFor":
+				return ((Class<?>) args[0]).isInstance(proxy) || target.isWrapperFor((Class<?>) args[0]);
+			case "close":
+				close();
+				return null;
+			default:
+				break;
+			}
+
+			Deadline deadline = Deadline.current();
+
+			if (deadline == null || !Statement.class.isAssignableFrom(method.getReturnType()))
+				return DeadlineDataSource.invoke(target, method, args);
+
+			if (deadline.isExpired())
+				throw new SQLTimeoutException("Request deadline exceeded");
+
+			Statement statement = (Statement) DeadlineDataSource.invoke(target, method, args);
+			queryTimeoutSet = true;
+			statement.setQueryTimeout(queryTimeoutSeconds(deadline, 0));
+			deadline.register(statement);
+
+			Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+					: statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+
+			return Proxy.newProxyInstance(DeadlineDataSource.class.getClassLoader(), new Class<?>[] { type },
+					new StatementHandler(statement, deadline));
+		}
+
+		/**
+		 * Method to reset the query timeout set for a deadline and close the
+		 * connection
+		 *
+		 * @throws SQLException
+		 */
+		private void close() throws SQLException {
+
+			try {
+
+				if (queryTimeoutSet && !target.isClosed())
+					try (Statement statement = target.createStatement()) {
+						statement.setQueryTimeout(0);
+					}
+
+			} finally {
+
+				target.close();
+
+			}
+		}
+
+	}
+
+	/**
+	 * Keeps a timeout set later within the deadline and unregisters the
+	 * statement from the deadline when it is closed
+	 */
+	private static class StatementHandler implements InvocationHandler {
+
+		private final Statement target;
+		private final Deadline deadline;
+
+		StatementHandler(Statement target, Deadline deadline) {
+			this.target = target;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "setQueryTimeout":
+				args[0] = queryTimeoutSeconds(deadline, (Integer) args[0]);
+				break;
+			case "close":
+				deadline.unregister(target);
+				break;
+			default:
+				break;
+			}
+
+			return DeadlineDataSource.invoke(target, method, args);
+		}
+
+	}
+
+}
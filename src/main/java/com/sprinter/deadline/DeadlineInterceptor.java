@@ -0,0 +1,200 @@
+package com.sprinter.deadline;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.EmbeddedValueResolverAware;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringValueResolver;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Starts the deadline of an API request from the X-Request-Timeout-Ms header,
+ * capped to a maximum, or else from the default of the endpoint. A caller
+ * that gives up after its timeout is not worked for any longer: the
+ * statements still running for it are cancelled and it is answered 504.
+ * Streamed responses keep the deadline on the thread writing them.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+public class DeadlineInterceptor
+		implements HandlerInterceptor, CallableProcessingInterceptor, EmbeddedValueResolverAware, DisposableBean {
+
+	public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+	static final String DEADLINE_ATTRIBUTE = DeadlineInterceptor.class.getName() + ".deadline";
+
+	private final long defaultMillis;
+	private final long maxMillis;
+	private final ScheduledThreadPoolExecutor scheduler;
+	private final ConcurrentMap<Method, Long> endpointMillis = new ConcurrentHashMap<>();
+
+	private final LongAdder started = new LongAdder();
+	private final LongAdder exceeded = new LongAdder();
+	private final LongAdder cancelledStatements = new LongAdder();
+
+	private StringValueResolver valueResolver;
+
+	public DeadlineInterceptor(MeterRegistry meterRegistry,
+			@Value("${sprinter.deadline.default-ms:10000}") long defaultMillis,
+			@Value("${sprinter.deadline.max-ms:600000}") long maxMillis) {
+		this.defaultMillis = defaultMillis;
+		this.maxMillis = maxMillis;
+		this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "deadline-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.scheduler.setRemoveOnCancelPolicy(true);
+
+		FunctionCounter.builder("sprinter.deadline.requests", started, LongAdder::sum).tag("outcome", "started")
+				.description("Requests run with a deadline").register(meterRegistry);
+		FunctionCounter.builder("sprinter.deadline.requests", exceeded, LongAdder::sum).tag("outcome", "exceeded")
+				.description("Requests run with a deadline").register(meterRegistry);
+		FunctionCounter.builder("sprinter.deadline.cancelled.statements", cancelledStatements, LongAdder::sum)
+				.description("Statements cancelled at the deadline of their request").register(meterRegistry);
+	}
+
+	@Override
+	public void setEmbeddedValueResolver(StringValueResolver valueResolver) {
+		this.valueResolver = valueResolver;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws Exception {
+
+		if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC)
+			return true;
+
+		long timeoutMillis;
+		String header = request.getHeader(TIMEOUT_HEADER);
+
+		if (header != null) {
+
+			try {
+
+				timeoutMillis = Long.parseLong(header.trim());
+
+			} catch (NumberFormatException ex) {
+
+				timeoutMillis = 0;
+
+			}
+
+			if (timeoutMillis <= 0) {
+				response.sendError(HttpStatus.BAD_REQUEST.value(), TIMEOUT_HEADER + " must be a positive number");
+				return false;
+			}
+
+			timeoutMillis = Math.min(timeoutMillis, maxMillis);
+
+		} else {
+
+			timeoutMillis = endpointMillis.computeIfAbsent(((HandlerMethod) handler).getMethod(),
+					this::endpointMillis);
+
+		}
+
+		if (timeoutMillis <= 0)
+			return true;
+
+		Deadline deadline = new Deadline(timeoutMillis, scheduler, cancelledStatements);
+
+		started.increment();
+		request.setAttribute(DEADLINE_ATTRIBUTE, deadline);
+		Deadline.set(deadline);
+
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) throws Exception {
+
+		Deadline.set(null);
+
+		if (!request.isAsyncStarted())
+			close((Deadline) request.getAttribute(DEADLINE_ATTRIBUTE));
+	}
+
+	@Override
+	public <T> void preProcess(NativeWebRequest request, Callable<T> task) throws Exception {
+		Deadline.set((Deadline) request.getAttribute(DEADLINE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+	}
+
+	@Override
+	public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult)
+			throws Exception {
+		Deadline.set(null);
+	}
+
+	@Override
+	public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) throws Exception {
+		close((Deadline) request.getAttribute(DEADLINE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+	}
+
+	@Override
+	public void destroy() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Method to get the deadline of the endpoint, the annotated one or the
+	 * default
+	 *
+	 * @param method Method
+	 *
+	 * @return long milliseconds
+	 */
+	long endpointMillis(Method method) {
+
+		RequestTimeout requestTimeout = method.getAnnotation(RequestTimeout.class);
+
+		if (requestTimeout == null)
+			return defaultMillis;
+
+		String value = valueResolver != null ? valueResolver.resolveStringValue(requestTimeout.value())
+				: requestTimeout.value();
+
+		return Long.parseLong(value.trim());
+	}
+
+	/**
+	 * A request can complete on more than one dispatch, only the first one
+	 * closes the deadline
+	 */
+	private void close(Deadline deadline) {
+
+		if (deadline == null || !deadline.close())
+			return;
+
+		if (deadline.isExpired()) {
+			exceeded.increment();
+			log.warn("Request deadline of {}ms exceeded", deadline.getTimeoutMillis());
+		}
+	}
+
+}
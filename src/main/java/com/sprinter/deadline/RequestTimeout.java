@@ -0,0 +1,23 @@
+package com.sprinter.deadline;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Default deadline of an endpoint in milliseconds, placeholders are resolved
+ * and 0 leaves the request without deadline unless the caller sends one
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequestTimeout {
+
+	String value();
+
+}
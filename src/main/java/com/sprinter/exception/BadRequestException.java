@@ -0,0 +1,14 @@
+package com.sprinter.exception;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class BadRequestException extends RuntimeException {
+
+	public BadRequestException(String detail) {
+		super(detail);
+	}
+
+}
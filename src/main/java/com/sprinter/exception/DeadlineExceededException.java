@@ -0,0 +1,14 @@
+package com.sprinter.exception;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+	public DeadlineExceededException(String detail) {
+		super(detail);
+	}
+
+}
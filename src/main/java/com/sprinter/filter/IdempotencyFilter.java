@@ -0,0 +1,432 @@
+package com.sprinter.filter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sprinter.limiter.AdmissionControlInterceptor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers a retried POST, PUT or PATCH carrying the Idempotency-Key of an
+ * earlier request of the same client with the recorded response of the
+ * first attempt, so the write is done once. A retry arriving while the
+ * first attempt runs waits for it. Keys of requests in flight are always
+ * kept, the recorded responses are remembered for a while in a bounded
+ * store. Reusing a key for a different request is rejected. Only
+ * successful responses are recorded, a failed write changed nothing and its
+ * retry runs again. Requests or responses over the body limit are passed
+ * through without deduplication.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class IdempotencyFilter extends OncePerRequestFilter implements MeterBinder {
+
+	public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+	public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+	static final int MAX_KEY_LENGTH = 255;
+
+	private static final List<String> RECORDED_HEADERS = Arrays.asList(HttpHeaders.LOCATION, HttpHeaders.ETAG);
+
+	private final ConcurrentMap<String, Attempt> inFlight = new ConcurrentHashMap<>();
+	private final Cache<String, Attempt> completed;
+	private final int maxBodyBytes;
+	private final long waitMillis;
+
+	private final LongAdder executed = new LongAdder();
+	private final LongAdder replayed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	public IdempotencyFilter(Duration ttl, long maxKeys, int maxBodyBytes, long waitMillis) {
+		this.completed = Caffeine.newBuilder().expireAfterWrite(ttl).maximumSize(maxKeys).build();
+		this.maxBodyBytes = maxBodyBytes;
+		this.waitMillis = waitMillis;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+
+		String method = request.getMethod();
+
+		return request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+				|| !"POST".equals(method) && !"PUT".equals(method) && !"PATCH".equals(method);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+
+		if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+			response.sendError(HttpStatus.BAD_REQUEST.value(),
+					IDEMPOTENCY_KEY_HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters");
+			return;
+		}
+
+		byte[] body = readBody(request.getInputStream());
+		HttpServletRequest bufferedRequest = new BufferedBodyRequest(request, body);
+
+		if (body.length > maxBodyBytes) {
+			filterChain.doFilter(bufferedRequest, response);
+			return;
+		}
+
+		String scopedKey = clientId(request) + " " + key;
+		String fingerprint = fingerprint(request, body);
+
+		while (true) {
+
+			Attempt attempt = new Attempt(fingerprint);
+			Attempt first = completed.getIfPresent(scopedKey);
+
+			if (first == null) {
+
+				first = inFlight.putIfAbsent(scopedKey, attempt);
+
+				if (first == null) {
+
+					first = completed.getIfPresent(scopedKey);
+
+					if (first == null) {
+						execute(scopedKey, attempt, bufferedRequest, response, filterChain);
+						return;
+					}
+
+					inFlight.remove(scopedKey, attempt);
+					attempt.response.complete(null);
+				}
+			}
+
+			if (!first.fingerprint.equals(fingerprint)) {
+				rejected.increment();
+				response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+						IDEMPOTENCY_KEY_HEADER + " was already used for a different request");
+				return;
+			}
+
+			RecordedResponse recorded;
+
+			try {
+
+				recorded = first.response.get(waitMillis, TimeUnit.MILLISECONDS);
+
+			} catch (TimeoutException ex) {
+
+				rejected.increment();
+				response.sendError(HttpStatus.CONFLICT.value(),
+						"A request with the same " + IDEMPOTENCY_KEY_HEADER + " is still in progress");
+				return;
+
+			} catch (InterruptedException ex) {
+
+				Thread.currentThread().interrupt();
+				response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+				return;
+
+			} catch (ExecutionException ex) {
+
+				recorded = null;
+
+			}
+
+			if (recorded != null) {
+				replay(recorded, response);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The response is buffered so it can be recorded before it is sent. A
+	 * recorded response is stored before the attempt leaves the in-flight map,
+	 * so a retry always finds one of them. A response that is not recorded
+	 * frees the key, and whoever waits on it tries to run the request itself.
+	 */
+	private void execute(String scopedKey, Attempt attempt, HttpServletRequest request, HttpServletResponse response,
+			FilterChain filterChain) throws ServletException, IOException {
+
+		executed.increment();
+
+		ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+		RecordedResponse recorded = null;
+
+		try {
+
+			filterChain.doFilter(request, responseWrapper);
+
+			if (!request.isAsyncStarted() && responseWrapper.getStatus() < 400
+					&& responseWrapper.getContentSize() <= maxBodyBytes)
+				recorded = new RecordedResponse(responseWrapper);
+
+		} finally {
+
+			if (recorded != null)
+				completed.put(scopedKey, attempt);
+
+			inFlight.remove(scopedKey, attempt);
+			attempt.response.complete(recorded);
+			responseWrapper.copyBodyToResponse();
+		}
+	}
+
+	private void replay(RecordedResponse recorded, HttpServletResponse response) throws IOException {
+
+		replayed.increment();
+		log.debug("Replaying response {} of a repeated request", recorded.status);
+
+		response.setStatus(recorded.status);
+		recorded.headers.forEach(response::setHeader);
+
+		if (recorded.contentType != null)
+			response.setContentType(recorded.contentType);
+
+		response.setHeader(REPLAYED_HEADER, "true");
+		response.setContentLength(recorded.body.length);
+		response.getOutputStream().write(recorded.body);
+	}
+
+	/**
+	 * Reads at most one byte more than the limit, the rest of a larger body
+	 * is left in the stream
+	 */
+	private byte[] readBody(InputStream inputStream) throws IOException {
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+
+		while (body.size() <= maxBodyBytes
+				&& (read = inputStream.read(buffer, 0, Math.min(buffer.length, maxBodyBytes + 1 - body.size()))) != -1)
+			body.write(buffer, 0, read);
+
+		return body.toByteArray();
+	}
+
+	private static String fingerprint(HttpServletRequest request, byte[] body) {
+
+		try {
+
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update((request.getMethod() + " " + request.getRequestURI() + "?" + request.getQueryString() + "\n")
+					.getBytes(StandardCharsets.UTF_8));
+			digest.update(body);
+
+			return Base64.getEncoder().encodeToString(digest.digest());
+
+		} catch (NoSuchAlgorithmException ex) {
+
+			throw new IllegalStateException(ex);
+
+		}
+	}
+
+	private static String clientId(HttpServletRequest request) {
+
+		String clientId = request.getHeader(AdmissionControlInterceptor.CLIENT_ID_HEADER);
+
+		return clientId != null && !clientId.isEmpty() ? clientId : request.getRemoteAddr();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("sprinter.idempotency.requests", executed, LongAdder::sum).tag("outcome", "executed")
+				.description("Requests with an idempotency key").register(registry);
+		FunctionCounter.builder("sprinter.idempotency.requests", replayed, LongAdder::sum).tag("outcome", "replayed")
+				.description("Requests with an idempotency key").register(registry);
+		FunctionCounter.builder("sprinter.idempotency.requests", rejected, LongAdder::sum).tag("outcome", "rejected")
+				.description("Requests with an idempotency key").register(registry);
+		Gauge.builder("sprinter.idempotency.keys", this,
+				filter -> filter.completed.estimatedSize() + filter.inFlight.size())
+				.description("Idempotency keys remembered").register(registry);
+	}
+
+	private static class Attempt {
+
+		private final String fingerprint;
+		private final CompletableFuture<RecordedResponse> response = new CompletableFuture<>();
+
+		Attempt(String fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+
+	}
+
+	private static class RecordedResponse {
+
+		private final int status;
+		private final String contentType;
+		private final Map<String, String> headers = new LinkedHashMap<>();
+		private final byte[] body;
+
+		RecordedResponse(ContentCachingResponseWrapper response) {
+			this.status = response.getStatus();
+			this.contentType = response.getContentType();
+			this.body = response.getContentAsByteArray();
+
+			for (String name : RECORDED_HEADERS) {
+				String value = response.getHeader(name);
+				if (value != null)
+					headers.put(name, value);
+			}
+		}
+
+	}
+
+	/**
+	 * Hands the body already read to the application followed by whatever is
+	 * left in the original stream
+	 */
+	private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+		private final byte[] body;
+
+		private ServletInputStream inputStream;
+
+		BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+			super(request);
+			this.body = body;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+
+			if (inputStream == null)
+				inputStream = new BufferedBodyInputStream(new ByteArrayInputStream(body), super.getInputStream());
+
+			return inputStream;
+		}
+
+		@Override
+		public BufferedReader getReader() throws IOException {
+
+			String encoding = getCharacterEncoding();
+
+			return new BufferedReader(new InputStreamReader(getInputStream(),
+					encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1));
+		}
+
+	}
+
+	/**
+	 * Non-blocking reads are left to the original stream. Its listener is told
+	 * about the buffered bytes too, even when the original stream has nothing
+	 * left to read.
+	 */
+	private static class BufferedBodyInputStream extends ServletInputStream {
+
+		private final ByteArrayInputStream buffered;
+		private final ServletInputStream remaining;
+
+		BufferedBodyInputStream(ByteArrayInputStream buffered, ServletInputStream remaining) {
+			this.buffered = buffered;
+			this.remaining = remaining;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return buffered.available() > 0 ? buffered.read() : remaining.read();
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+
+			if (length == 0)
+				return 0;
+
+			return buffered.available() > 0 ? buffered.read(buffer, offset, length)
+					: remaining.read(buffer, offset, length);
+		}
+
+		@Override
+		public int available() throws IOException {
+			return buffered.available() > 0 ? buffered.available() : remaining.available();
+		}
+
+		@Override
+		public boolean isFinished() {
+			return buffered.available() == 0 && remaining.isFinished();
+		}
+
+		@Override
+		public boolean isReady() {
+			return buffered.available() > 0 || remaining.isReady();
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+
+			remaining.setReadListener(new ReadListener() {
+
+				@Override
+				public void onDataAvailable() throws IOException {
+					readListener.onDataAvailable();
+				}
+
+				@Override
+				public void onAllDataRead() throws IOException {
+
+					if (buffered.available() > 0)
+						readListener.onDataAvailable();
+
+					readListener.onAllDataRead();
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					readListener.onError(throwable);
+				}
+
+			});
+		}
+
+	}
+
+}
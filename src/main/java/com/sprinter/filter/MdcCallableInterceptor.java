@@ -0,0 +1,48 @@
+package com.sprinter.filter;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.slf4j.MDC;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+/**
+ * Carries the MDC of a request, and so its correlation id, over to the
+ * thread writing its streamed response
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class MdcCallableInterceptor implements CallableProcessingInterceptor {
+
+	static final String MDC_ATTRIBUTE = MdcCallableInterceptor.class.getName() + ".mdc";
+
+	@Override
+	public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) throws Exception {
+
+		Map<String, String> context = MDC.getCopyOfContextMap();
+
+		if (context != null)
+			request.setAttribute(MDC_ATTRIBUTE, context, RequestAttributes.SCOPE_REQUEST);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> void preProcess(NativeWebRequest request, Callable<T> task) throws Exception {
+
+		Map<String, String> context = (Map<String, String>) request.getAttribute(MDC_ATTRIBUTE,
+				RequestAttributes.SCOPE_REQUEST);
+
+		if (context != null)
+			MDC.setContextMap(context);
+	}
+
+	@Override
+	public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult)
+			throws Exception {
+		MDC.clear();
+	}
+
+}
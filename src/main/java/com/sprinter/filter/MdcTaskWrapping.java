@@ -0,0 +1,111 @@
+package com.sprinter.filter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.MDC;
+
+/**
+ * Carries the MDC of the submitting thread, and so its correlation id, over
+ * to the thread running a task, the same way Context.taskWrapping carries the
+ * trace
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public final class MdcTaskWrapping {
+
+	private MdcTaskWrapping() {
+	}
+
+	/**
+	 * Method to wrap a task so it runs with the MDC of the calling thread
+	 *
+	 * @param task Runnable
+	 *
+	 * @return Runnable
+	 */
+	public static Runnable wrap(Runnable task) {
+
+		Map<String, String> context = MDC.getCopyOfContextMap();
+
+		return () -> {
+
+			Map<String, String> previous = MDC.getCopyOfContextMap();
+			set(context);
+
+			try {
+
+				task.run();
+
+			} finally {
+
+				set(previous);
+			}
+		};
+	}
+
+	/**
+	 * Method to wrap an executor so every task runs with the MDC of the
+	 * thread submitting it
+	 *
+	 * @param executor ExecutorService
+	 *
+	 * @return ExecutorService
+	 */
+	public static ExecutorService wrap(ExecutorService executor) {
+		return new MdcExecutorService(executor);
+	}
+
+	private static void set(Map<String, String> context) {
+
+		if (context != null)
+			MDC.setContextMap(context);
+		else
+			MDC.clear();
+	}
+
+	private static class MdcExecutorService extends AbstractExecutorService {
+
+		private final ExecutorService delegate;
+
+		MdcExecutorService(ExecutorService delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			delegate.execute(wrap(command));
+		}
+
+		@Override
+		public void shutdown() {
+			delegate.shutdown();
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return delegate.shutdownNow();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return delegate.isShutdown();
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return delegate.isTerminated();
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			return delegate.awaitTermination(timeout, unit);
+		}
+
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.sprinter.filter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Assigns a correlation id to every request, keeping a well-formed one sent
+ * by the caller, and writes one parameterized access line per request.
+ * Successful GETs are sampled, everything else is always logged. A streamed
+ * response is logged when the stream completes, with its final status and
+ * duration.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLoggingFilter extends OncePerRequestFilter {
+
+	public static final String CORRELATION_ID_HEADER = "X-Correlation-Id";
+	public static final String CORRELATION_ID_KEY = "correlationId";
+
+	/**
+	 * A correlation id goes into every log line and back to the caller, so
+	 * one with other characters is replaced rather than trusted
+	 */
+	static final Pattern CORRELATION_ID_PATTERN = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+	private final int getSampleRate;
+	private final AtomicLong getRequests = new AtomicLong();
+
+	public RequestLoggingFilter(@Value("${sprinter.logging.get-sample-rate:100}") int getSampleRate) {
+		this.getSampleRate = Math.max(1, getSampleRate);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		String correlationId = request.getHeader(CORRELATION_ID_HEADER);
+
+		if (correlationId == null || !CORRELATION_ID_PATTERN.matcher(correlationId).matches())
+			correlationId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+		MDC.put(CORRELATION_ID_KEY, correlationId);
+		response.setHeader(CORRELATION_ID_HEADER, correlationId);
+
+		long start = System.nanoTime();
+		boolean async = false;
+
+		try {
+
+			filterChain.doFilter(request, response);
+
+			if (request.isAsyncStarted()) {
+				async = true;
+				request.getAsyncContext().addListener(new AccessLog(correlationId, start, request, response));
+			}
+
+		} finally {
+
+			if (!async)
+				log(request, response, start);
+
+			MDC.remove(CORRELATION_ID_KEY);
+		}
+	}
+
+	private void log(HttpServletRequest request, HttpServletResponse response, long start) {
+
+		if (log.isInfoEnabled() && isSampled(request, response))
+			log.info("method={} path={} status={} durationMs={}", request.getMethod(), request.getRequestURI(),
+					response.getStatus(), (System.nanoTime() - start) / 1_000_000);
+	}
+
+	private boolean isSampled(HttpServletRequest request, HttpServletResponse response) {
+
+		if (!"GET".equals(request.getMethod()) || response.getStatus() >= 400)
+			return true;
+
+		return getRequests.getAndIncrement() % getSampleRate == 0;
+	}
+
+	private class AccessLog implements AsyncListener {
+
+		private final String correlationId;
+		private final long start;
+		private final HttpServletRequest request;
+		private final HttpServletResponse response;
+
+		AccessLog(String correlationId, long start, HttpServletRequest request, HttpServletResponse response) {
+			this.correlationId = correlationId;
+			this.start = start;
+			this.request = request;
+			this.response = response;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+
+			MDC.put(CORRELATION_ID_KEY, correlationId);
+
+			try {
+
+				log(request, response, start);
+
+			} finally {
+
+				MDC.remove(CORRELATION_ID_KEY);
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			event.getAsyncContext().addListener(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.sprinter.limiter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limiter whose limit follows AIMD: it grows by about one per
+ * window of requests completed under the target latency while at least half of
+ * the limit is in use, and is cut multiplicatively when a request is slower
+ * than the target or fails.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	static final double BACKOFF_RATIO = 0.9;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long targetLatencyNanos;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile double limit;
+
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyNanos) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.targetLatencyNanos = targetLatencyNanos;
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+	}
+
+	/**
+	 * Method to take a slot
+	 * 
+	 * @return boolean false when the limit is reached
+	 */
+	public boolean tryAcquire() {
+
+		while (true) {
+
+			int current = inFlight.get();
+
+			if (current >= (int) limit)
+				return false;
+
+			if (inFlight.compareAndSet(current, current + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * Method to release a slot and adapt the limit
+	 * 
+	 * @param latencyNanos long
+	 * @param success      boolean
+	 */
+	public void release(long latencyNanos, boolean success) {
+
+		int current = inFlight.getAndDecrement();
+
+		synchronized (this) {
+
+			if (!success || latencyNanos > targetLatencyNanos)
+				limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+			else if (current * 2 >= limit)
+				limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+	}
+
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.sprinter.limiter;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control in front of the API: a token bucket per client answers
+ * 429 and an adaptive concurrency limit per endpoint answers 503, both with
+ * Retry-After, before requests reach the service layer.
+ * 
+ * Clients are keyed on the authenticated principal, else on the remote
+ * address. X-Client-Id is only trusted when the request comes from one of the
+ * configured proxies, otherwise any caller could get a fresh bucket per
+ * request by changing the header.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+	public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+	static final String ADMISSION_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".admission";
+	static final long IDLE_CLIENT_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+	private final ClientRateLimiter clientRateLimiter;
+	private final boolean rateLimitEnabled;
+	private final int initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long targetLatencyNanos;
+	private final Set<String> trustedProxies;
+	private final MeterRegistry meterRegistry;
+
+	private final ConcurrentMap<String, EndpointAdmission> endpoints = new ConcurrentHashMap<>();
+
+	public AdmissionControlInterceptor(MeterRegistry meterRegistry,
+			@Value("${sprinter.admission.rate-limit.enabled:true}") boolean rateLimitEnabled,
+			@Value("${sprinter.admission.rate-limit.permits-per-second:50}") double permitsPerSecond,
+			@Value("${sprinter.admission.rate-limit.burst:100}") double burst,
+			@Value("${sprinter.admission.rate-limit.max-clients:10000}") int maxClients,
+			@Value("${sprinter.admission.rate-limit.trusted-proxies:}") String[] trustedProxies,
+			@Value("${sprinter.admission.concurrency.initial-limit:20}") int initialLimit,
+			@Value("${sprinter.admission.concurrency.min-limit:2}") int minLimit,
+			@Value("${sprinter.admission.concurrency.max-limit:200}") int maxLimit,
+			@Value("${sprinter.admission.concurrency.target-latency-ms:250}") long targetLatencyMillis) {
+		this.meterRegistry = meterRegistry;
+		this.rateLimitEnabled = rateLimitEnabled;
+		this.clientRateLimiter = new ClientRateLimiter(permitsPerSecond, burst, maxClients);
+		this.initialLimit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+		this.trustedProxies = new HashSet<>(Arrays.asList(trustedProxies));
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws Exception {
+
+		if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC)
+			return true;
+
+		EndpointAdmission endpoint = endpoints.computeIfAbsent(((HandlerMethod) handler).getMethod().getName(),
+				this::newEndpointAdmission);
+
+		long now = System.nanoTime();
+
+		if (rateLimitEnabled) {
+
+			long waitNanos = clientRateLimiter.tryAcquire(clientId(request), now);
+
+			if (waitNanos > 0) {
+				endpoint.rateLimited.increment();
+				reject(response, HttpStatus.TOO_MANY_REQUESTS, waitNanos);
+				return false;
+			}
+		}
+
+		if (!endpoint.limiter.tryAcquire()) {
+			endpoint.shed.increment();
+			reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+			return false;
+		}
+
+		endpoint.admitted.increment();
+		request.setAttribute(ADMISSION_ATTRIBUTE, new Admission(endpoint, now));
+
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) throws Exception {
+
+		if (request.isAsyncStarted())
+			return;
+
+		Admission admission = (Admission) request.getAttribute(ADMISSION_ATTRIBUTE);
+
+		if (admission == null)
+			return;
+
+		request.removeAttribute(ADMISSION_ATTRIBUTE);
+		admission.endpoint.limiter.release(System.nanoTime() - admission.startNanos,
+				ex == null && response.getStatus() < 500);
+	}
+
+	/**
+	 * Method to get the requests in flight across all endpoints
+	 * 
+	 * @return int
+	 */
+	public int getInFlight() {
+
+		int inFlight = 0;
+
+		for (EndpointAdmission endpoint : endpoints.values())
+			inFlight += endpoint.limiter.getInFlight();
+
+		return inFlight;
+	}
+
+	/**
+	 * Method to forget idle clients
+	 * 
+	 */
+	@Scheduled(fixedDelay = 60_000)
+	public void evictIdleClients() {
+		clientRateLimiter.evictIdle(IDLE_CLIENT_NANOS, System.nanoTime());
+	}
+
+	private String clientId(HttpServletRequest request) {
+
+		Principal principal = request.getUserPrincipal();
+
+		if (principal != null)
+			return "principal:" + principal.getName();
+
+		String clientId = request.getHeader(CLIENT_ID_HEADER);
+
+		if (clientId != null && !clientId.isEmpty() && trustedProxies.contains(request.getRemoteAddr()))
+			return "client:" + clientId;
+
+		return "address:" + request.getRemoteAddr();
+	}
+
+	private void reject(HttpServletResponse response, HttpStatus status, long retryAfterNanos) {
+
+		long retryAfterSeconds = Math.max(1, (retryAfterNanos + 999_999_999L) / 1_000_000_000L);
+
+		log.debug("Rejected request with {}", status.value());
+
+		response.setStatus(status.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+	}
+
+	private EndpointAdmission newEndpointAdmission(String endpoint) {
+
+		EndpointAdmission admission = new EndpointAdmission(
+				new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, targetLatencyNanos),
+				counter(endpoint, "admitted"), counter(endpoint, "rate_limited"), counter(endpoint, "shed"));
+
+		Gauge.builder("sprinter.admission.limit", admission.limiter, AdaptiveConcurrencyLimiter::getLimit)
+				.tag("endpoint", endpoint).register(meterRegistry);
+		Gauge.builder("sprinter.admission.in_flight", admission.limiter, AdaptiveConcurrencyLimiter::getInFlight)
+				.tag("endpoint", endpoint).register(meterRegistry);
+
+		return admission;
+	}
+
+	private Counter counter(String endpoint, String outcome) {
+		return Counter.builder("sprinter.admission.requests").tag("endpoint", endpoint).tag("outcome", outcome)
+				.register(meterRegistry);
+	}
+
+	private static class EndpointAdmission {
+
+		private final AdaptiveConcurrencyLimiter limiter;
+		private final Counter admitted;
+		private final Counter rateLimited;
+		private final Counter shed;
+
+		EndpointAdmission(AdaptiveConcurrencyLimiter limiter, Counter admitted, Counter rateLimited, Counter shed) {
+			this.limiter = limiter;
+			this.admitted = admitted;
+			this.rateLimited = rateLimited;
+			this.shed = shed;
+		}
+
+	}
+
+	private static class Admission {
+
+		private final EndpointAdmission endpoint;
+		private final long startNanos;
+
+		Admission(EndpointAdmission endpoint, long startNanos) {
+			this.endpoint = endpoint;
+			this.startNanos = startNanos;
+		}
+
+	}
+
+}
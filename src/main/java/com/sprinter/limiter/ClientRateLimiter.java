@@ -0,0 +1,65 @@
+package com.sprinter.limiter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Token bucket per client. The number of tracked clients is bounded: once
+ * full, unknown clients share a single overflow bucket until idle clients are
+ * evicted.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ClientRateLimiter {
+
+	private final double permitsPerSecond;
+	private final double burst;
+	private final int maxClients;
+
+	private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+	private final TokenBucket overflow;
+
+	public ClientRateLimiter(double permitsPerSecond, double burst, int maxClients) {
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = Math.max(1, burst);
+		this.maxClients = maxClients;
+		this.overflow = new TokenBucket(permitsPerSecond, this.burst, System.nanoTime());
+	}
+
+	/**
+	 * Method to take a permit for a client
+	 * 
+	 * @param clientId String
+	 * @param nowNanos long
+	 * 
+	 * @return long 0 when admitted, otherwise nanos until the next permit
+	 */
+	public long tryAcquire(String clientId, long nowNanos) {
+
+		TokenBucket bucket = buckets.get(clientId);
+
+		if (bucket == null) {
+			bucket = buckets.size() < maxClients
+					? buckets.computeIfAbsent(clientId, key -> new TokenBucket(permitsPerSecond, burst, nowNanos))
+					: overflow;
+		}
+
+		return bucket.tryAcquire(nowNanos);
+	}
+
+	/**
+	 * Method to forget clients that have not been seen for a while
+	 * 
+	 * @param idleNanos long
+	 * @param nowNanos  long
+	 */
+	public void evictIdle(long idleNanos, long nowNanos) {
+		buckets.values().removeIf(bucket -> nowNanos - bucket.getLastAccessNanos() > idleNanos);
+	}
+
+	public int getTrackedClients() {
+		return buckets.size();
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.sprinter.limiter;
+
+/**
+ * Token bucket refilled lazily on every attempt.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class TokenBucket {
+
+	private final double capacity;
+	private final double tokensPerNano;
+
+	private double tokens;
+	private long lastRefillNanos;
+	private volatile long lastAccessNanos;
+
+	public TokenBucket(double permitsPerSecond, double capacity, long nowNanos) {
+		this.capacity = capacity;
+		this.tokensPerNano = permitsPerSecond / 1_000_000_000d;
+		this.tokens = capacity;
+		this.lastRefillNanos = nowNanos;
+		this.lastAccessNanos = nowNanos;
+	}
+
+	/**
+	 * Method to take one token
+	 * 
+	 * @param nowNanos long
+	 * 
+	 * @return long 0 when the token was taken, otherwise nanos until one is
+	 *         available
+	 */
+	public synchronized long tryAcquire(long nowNanos) {
+
+		lastAccessNanos = nowNanos;
+		tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+		lastRefillNanos = nowNanos;
+
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+
+		return (long) Math.ceil((1 - tokens) / tokensPerNano);
+	}
+
+	public long getLastAccessNanos() {
+		return lastAccessNanos;
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.sprinter.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 import com.sprinter.model.ProductModel;
@@ -18,5 +19,6 @@ public interface ProductMapper {
 
 	ProductModel productEntityToProductModel(ProductEntity productEntity);
 
+	@Mapping(target = "deletedAt", ignore = true)
 	ProductEntity productModelToProductEntity(ProductModel productModel);
 }
@@ -0,0 +1,45 @@
+package com.sprinter.model;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public enum ExportFormat {
+
+	NDJSON("application/x-ndjson", "ndjson"), CSV("text/csv", "csv");
+
+	private final String mediaType;
+	private final String extension;
+
+	ExportFormat(String mediaType, String extension) {
+		this.mediaType = mediaType;
+		this.extension = extension;
+	}
+
+	public String getMediaType() {
+		return mediaType;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Method to resolve a format from its name or extension
+	 * 
+	 * @param value String
+	 * 
+	 * @return ExportFormat
+	 */
+	public static ExportFormat fromValue(String value) {
+
+		for (ExportFormat format : values()) {
+			if (format.extension.equalsIgnoreCase(value) || format.name().equalsIgnoreCase(value))
+				return format;
+		}
+
+		throw new IllegalArgumentException("Unsupported export format: " + value);
+	}
+
+}
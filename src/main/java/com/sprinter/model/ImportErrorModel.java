@@ -0,0 +1,22 @@
+package com.sprinter.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportErrorModel {
+
+	private long record;
+	private String message;
+
+}
@@ -0,0 +1,28 @@
+package com.sprinter.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReportModel {
+
+	private long received;
+	private long imported;
+	private long failed;
+	private long batches;
+	private long elapsedMillis;
+	private List<ImportErrorModel> errors;
+
+}
@@ -0,0 +1,24 @@
+package com.sprinter.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductLookupModel {
+
+	private List<ProductModel> products;
+	private List<Long> missing;
+
+}
@@ -11,7 +11,7 @@ import lombok.NoArgsConstructor;
  *
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProductModel {
@@ -19,5 +19,6 @@ public class ProductModel {
 	private long id;
 	private String name;
 	private String description;
+	private Long version;
 
 }
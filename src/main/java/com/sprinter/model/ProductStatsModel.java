@@ -0,0 +1,31 @@
+package com.sprinter.model;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStatsModel {
+
+	private long total;
+	private long created;
+	private long updated;
+	private long deleted;
+	private long createdLastMinute;
+	private long updatedLastMinute;
+	private Map<String, Long> nameLengths;
+	private Map<String, Long> descriptionLengths;
+	private long reconciledAt;
+
+}
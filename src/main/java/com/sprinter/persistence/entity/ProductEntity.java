@@ -1,9 +1,17 @@
 package com.sprinter.persistence.entity;
 
+import java.sql.Timestamp;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.Where;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -11,6 +19,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
+ * Deleting a product only marks it with a deletion time, tombstones are
+ * hidden from every read and removed later by the purger.
  * 
  * @author Álvaro Aglio Sánchez
  *
@@ -20,7 +30,11 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "Product")
+@DynamicUpdate
+@SQLDelete(sql = "update Product set deleted_at = current_timestamp, version = version + 1"
+		+ " where id = ? and version = ?")
+@Where(clause = "deleted_at is null")
+@Table(name = "Product", indexes = @Index(name = "idx_product_deleted_at", columnList = "deleted_at"))
 public class ProductEntity {
 
 	@Id
@@ -33,4 +47,11 @@ public class ProductEntity {
 	@Column(name = "description", nullable = false)
 	private String description;
 
+	@Version
+	@Column(name = "version", nullable = false)
+	private long version;
+
+	@Column(name = "deleted_at")
+	private Timestamp deletedAt;
+
 }
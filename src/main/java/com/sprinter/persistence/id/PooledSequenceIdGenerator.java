@@ -0,0 +1,84 @@
+package com.sprinter.persistence.id;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.sprinter.datasource.ShardRouter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pooled-lo generator over a database sequence on shard 0 that increments by
+ * the allocation size. Every value read from the sequence is the first id of
+ * a block the node hands out from memory, so only one insert in every
+ * allocation size pays a round trip, and nodes sharing the sequence never
+ * get the same block. The sequence is created on first use starting after
+ * the highest stored id of every shard.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+public class PooledSequenceIdGenerator implements ProductIdGenerator {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final ShardRouter shardRouter;
+	private final String sequenceName;
+	private final int allocationSize;
+
+	private String nextValueQuery;
+
+	private long next;
+	private long end;
+
+	public PooledSequenceIdGenerator(JdbcTemplate jdbcTemplate, ShardRouter shardRouter, String sequenceName,
+			int allocationSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.shardRouter = shardRouter;
+		this.sequenceName = sequenceName;
+		this.allocationSize = Math.max(1, allocationSize);
+	}
+
+	/**
+	 * Method to get the next id, from the current block or from a new one
+	 *
+	 * @return long
+	 */
+	@Override
+	public synchronized long nextId() {
+
+		if (next == end) {
+			next = shardRouter.on(0, this::nextBlock);
+			end = next + allocationSize;
+		}
+
+		return next++;
+	}
+
+	private long nextBlock() {
+
+		if (nextValueQuery == null)
+			nextValueQuery = createSequence();
+
+		return jdbcTemplate.queryForObject(nextValueQuery, Long.class);
+	}
+
+	private String createSequence() {
+
+		String database = jdbcTemplate
+				.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+
+		long start = 1 + shardRouter.scatter(shard -> jdbcTemplate
+				.queryForObject("select coalesce(max(id), 0) from Product", Long.class)).stream()
+				.mapToLong(Long::longValue).max().orElse(0);
+
+		jdbcTemplate.execute("create sequence if not exists " + sequenceName + " start with " + start
+				+ " increment by " + allocationSize);
+
+		log.info("Product ids allocated from sequence {} in blocks of {}", sequenceName, allocationSize);
+
+		return "PostgreSQL".equals(database) ? "select nextval('" + sequenceName + "')"
+				: "select next value for " + sequenceName;
+	}
+
+}
@@ -0,0 +1,13 @@
+package com.sprinter.persistence.id;
+
+/**
+ * Assigns the id of a product created without one
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public interface ProductIdGenerator {
+
+	long nextId();
+
+}
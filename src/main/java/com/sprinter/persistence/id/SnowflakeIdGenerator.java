@@ -0,0 +1,71 @@
+package com.sprinter.persistence.id;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Node local generator with no database round trip. An id holds the
+ * milliseconds since 2020 in 41 bits, the node in 10 bits and a sequence
+ * within the millisecond in 12 bits, so ids of different nodes never clash
+ * and grow with time. When the sequence of a millisecond runs out, or the
+ * clock goes back, ids are taken from the next millisecond ahead of the
+ * clock instead of waiting for it.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class SnowflakeIdGenerator implements ProductIdGenerator {
+
+	static final long EPOCH_MILLIS = 1577836800000L;
+	static final int NODE_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+	static final long MAX_NODE = (1L << NODE_BITS) - 1;
+	static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+	private final long node;
+	private final LongSupplier clock;
+
+	private long lastMillis = -1;
+	private long sequence;
+
+	public SnowflakeIdGenerator(long node) {
+		this(node, System::currentTimeMillis);
+	}
+
+	SnowflakeIdGenerator(long node, LongSupplier clock) {
+
+		if (node < 0 || node > MAX_NODE)
+			throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE + ", got " + node);
+
+		this.node = node;
+		this.clock = clock;
+	}
+
+	/**
+	 * Method to get the next id
+	 *
+	 * @return long
+	 */
+	@Override
+	public synchronized long nextId() {
+
+		long millis = Math.max(clock.getAsLong(), lastMillis);
+
+		if (millis == lastMillis) {
+
+			if (++sequence > MAX_SEQUENCE) {
+				millis++;
+				sequence = 0;
+			}
+
+		} else {
+
+			sequence = 0;
+
+		}
+
+		lastMillis = millis;
+
+		return (millis - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | sequence;
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.sprinter.persistence.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * Read path that writes product rows straight from the JDBC result set to a
+ * JSON generator, with no entity or model in between. The JSON produced is the
+ * same as the serialized ProductModel.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ProductJdbcRepository {
+
+	static final int FETCH_SIZE = 500;
+
+	static final String SELECT_ALL = "select id, name, description, version from Product"
+			+ " where deleted_at is null order by id";
+	static final String SELECT_BY_ID = "select id, name, description, version from Product"
+			+ " where id = ? and deleted_at is null";
+
+	private static final SerializableString ID = new SerializedString("id");
+	private static final SerializableString NAME = new SerializedString("name");
+	private static final SerializableString DESCRIPTION = new SerializedString("description");
+	private static final SerializableString VERSION = new SerializedString("version");
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public ProductJdbcRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Method to write all products as a JSON array
+	 * 
+	 * @param generator JsonGenerator
+	 * 
+	 * @return long written products
+	 */
+	public long writeAll(JsonGenerator generator) throws IOException {
+
+		generator.writeStartArray();
+
+		long count = writeRows(generator);
+
+		generator.writeEndArray();
+
+		return count;
+	}
+
+	/**
+	 * Method to write all products as JSON objects into an array the caller
+	 * already started
+	 * 
+	 * @param generator JsonGenerator
+	 * 
+	 * @return long written products
+	 */
+	public long writeRows(JsonGenerator generator) throws IOException {
+
+		long[] count = new long[1];
+
+		try {
+
+			jdbcTemplate.query(connection -> {
+				PreparedStatement statement = connection.prepareStatement(SELECT_ALL);
+				statement.setFetchSize(FETCH_SIZE);
+				return statement;
+			}, (ResultSet rs) -> {
+				writeRow(rs, generator);
+				count[0]++;
+			});
+
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+
+		return count[0];
+	}
+
+	/**
+	 * Method to write a product as a JSON object
+	 * 
+	 * @param id        long
+	 * @param generator JsonGenerator
+	 * 
+	 * @return boolean false if the product does not exist
+	 */
+	public boolean writeById(long id, JsonGenerator generator) throws IOException {
+
+		boolean[] found = new boolean[1];
+
+		try {
+
+			jdbcTemplate.query(SELECT_BY_ID, (ResultSet rs) -> {
+				writeRow(rs, generator);
+				found[0] = true;
+			}, id);
+
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+
+		return found[0];
+	}
+
+	private void writeRow(ResultSet rs, JsonGenerator generator) throws SQLException {
+
+		try {
+
+			generator.writeStartObject();
+			generator.writeFieldName(ID);
+			generator.writeNumber(rs.getLong(1));
+			generator.writeFieldName(NAME);
+			generator.writeString(rs.getString(2));
+			generator.writeFieldName(DESCRIPTION);
+			generator.writeString(rs.getString(3));
+			generator.writeFieldName(VERSION);
+			generator.writeNumber(rs.getLong(4));
+			generator.writeEndObject();
+
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+}
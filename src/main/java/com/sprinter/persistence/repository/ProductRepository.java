@@ -1,7 +1,16 @@
 package com.sprinter.persistence.repository;
 
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.sprinter.persistence.entity.ProductEntity;
 
@@ -13,4 +22,56 @@ import com.sprinter.persistence.entity.ProductEntity;
 @Repository
 public interface ProductRepository extends JpaRepository<ProductEntity, Long> {
 
+	@Query("select min(p.id) from ProductEntity p")
+	Long findMinId();
+
+	@Query("select max(p.id) from ProductEntity p")
+	Long findMaxId();
+
+	@Query("select p.id from ProductEntity p")
+	List<Long> findAllIds();
+
+	List<ProductEntity> findByIdBetweenOrderByIdAsc(long fromId, long toId);
+
+	List<ProductEntity> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+	@Query("select length(p.name), count(p) from ProductEntity p group by length(p.name)")
+	List<Object[]> countByNameLength();
+
+	@Query("select length(p.description), count(p) from ProductEntity p group by length(p.description)")
+	List<Object[]> countByDescriptionLength();
+
+	@Query(value = "select id from Product where deleted_at < :before order by deleted_at limit :limit",
+			nativeQuery = true)
+	List<Long> findTombstoneIds(@Param("before") Timestamp before, @Param("limit") int limit);
+
+	@Query(value = "select min(deleted_at) from Product where deleted_at is not null", nativeQuery = true)
+	Timestamp findOldestTombstone();
+
+	@Query(value = "select count(*) from Product where deleted_at is not null", nativeQuery = true)
+	long countTombstones();
+
+	@Modifying
+	@Transactional
+	@Query(value = "delete from Product where id in :ids and deleted_at is not null", nativeQuery = true)
+	int purgeTombstones(@Param("ids") Collection<Long> ids);
+
+	@Query(value = "select id from Product where id > :afterId order by id limit :limit", nativeQuery = true)
+	List<Long> findRowIdsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+	@Query(value = "select * from Product where id in :ids", nativeQuery = true)
+	List<ProductEntity> findRowsById(@Param("ids") Collection<Long> ids);
+
+	@Modifying
+	@Transactional
+	@Query(value = "insert into Product (id, name, description, version, deleted_at)"
+			+ " values (:id, :name, :description, :version, :deletedAt)", nativeQuery = true)
+	int insertRow(@Param("id") long id, @Param("name") String name, @Param("description") String description,
+			@Param("version") long version, @Param("deletedAt") Timestamp deletedAt);
+
+	@Modifying
+	@Transactional
+	@Query(value = "delete from Product where id = :id", nativeQuery = true)
+	int deleteRow(@Param("id") long id);
+
 }
@@ -0,0 +1,29 @@
+package com.sprinter.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Name("com.sprinter.CacheLookup")
+@Label("Cache Lookup")
+@Category({ "Sprinter", "Product" })
+@StackTrace(false)
+public class CacheLookupEvent extends Event {
+
+	@Label("Cache")
+	String cache;
+
+	@Label("Key")
+	String key;
+
+	@Label("Hit")
+	boolean hit;
+
+}
@@ -0,0 +1,186 @@
+package com.sprinter.profiling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Actuator endpoint to take a bounded flight recording of the live service.
+ * It is only available once exposed, e.g.
+ * {@code management.endpoints.web.exposure.include=health,metrics,jfr}
+ * <ul>
+ * <li>POST /actuator/jfr {"settings": "profile", "durationSeconds": 120}
+ * starts a recording</li>
+ * <li>GET /actuator/jfr reports its state</li>
+ * <li>DELETE /actuator/jfr stops it</li>
+ * <li>GET /actuator/jfr/recording downloads what was recorded</li>
+ * </ul>
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@Component
+@WebEndpoint(id = "jfr")
+@ConditionalOnAvailableEndpoint(endpoint = FlightRecorderEndpoint.class)
+public class FlightRecorderEndpoint {
+
+	static final String RECORDING_NAME = "sprinter";
+	static final String RECORDING_SELECTOR = "recording";
+
+	private final Duration maxDuration;
+	private final Duration maxAge;
+	private final long maxSizeBytes;
+
+	private Recording recording;
+
+	public FlightRecorderEndpoint(@Value("${sprinter.profiling.recording.max-duration:30m}") Duration maxDuration,
+			@Value("${sprinter.profiling.recording.max-age:30m}") Duration maxAge,
+			@Value("${sprinter.profiling.recording.max-size-mb:100}") long maxSizeMb) {
+		this.maxDuration = maxDuration;
+		this.maxAge = maxAge;
+		this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+	}
+
+	/**
+	 * Method to get the state of the recording
+	 * 
+	 * @return Map<String, Object>
+	 */
+	@ReadOperation
+	public synchronized Map<String, Object> status() {
+
+		Map<String, Object> status = new LinkedHashMap<>();
+
+		if (recording == null) {
+			status.put("state", "NONE");
+			return status;
+		}
+
+		status.put("state", recording.getState());
+		status.put("startTime", recording.getStartTime());
+		status.put("stopTime", recording.getStopTime());
+		status.put("duration", recording.getDuration());
+		status.put("maxSize", recording.getMaxSize());
+		status.put("size", recording.getSize());
+
+		return status;
+	}
+
+	/**
+	 * Method to start a recording, the duration is capped by
+	 * sprinter.profiling.recording.max-duration
+	 * 
+	 * @param settings        String default or profile
+	 * @param durationSeconds Long
+	 * 
+	 * @return WebEndpointResponse Map<String, Object>
+	 */
+	@WriteOperation
+	public synchronized WebEndpointResponse<Map<String, Object>> start(@Nullable String settings,
+			@Nullable Long durationSeconds) {
+
+		if (recording != null && recording.getState() == RecordingState.RUNNING)
+			return new WebEndpointResponse<>(status(), HttpStatus.CONFLICT.value());
+
+		Configuration configuration;
+
+		try {
+
+			configuration = Configuration.getConfiguration(settings != null ? settings : "default");
+
+		} catch (IOException | ParseException ex) {
+
+			log.warn("Unknown flight recorder settings {}", settings);
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+
+		}
+
+		Duration duration = durationSeconds != null ? Duration.ofSeconds(durationSeconds) : maxDuration;
+
+		if (recording != null)
+			recording.close();
+
+		recording = new Recording(configuration);
+		recording.setName(RECORDING_NAME);
+		recording.setToDisk(true);
+		recording.setMaxSize(maxSizeBytes);
+		recording.setMaxAge(maxAge);
+		recording.setDuration(duration.compareTo(maxDuration) < 0 ? duration : maxDuration);
+		recording.start();
+
+		log.info("Flight recording started with {} settings for {}", configuration.getName(),
+				recording.getDuration());
+
+		return new WebEndpointResponse<>(status());
+	}
+
+	/**
+	 * Method to stop the recording, what was recorded can still be downloaded
+	 * 
+	 * @return WebEndpointResponse Map<String, Object>
+	 */
+	@DeleteOperation
+	public synchronized WebEndpointResponse<Map<String, Object>> stop() {
+
+		if (recording == null || recording.getState() != RecordingState.RUNNING)
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+
+		recording.stop();
+
+		log.info("Flight recording stopped, {} bytes", recording.getSize());
+
+		return new WebEndpointResponse<>(status());
+	}
+
+	/**
+	 * Method to download the recording
+	 * 
+	 * @param name String recording
+	 * 
+	 * @return WebEndpointResponse Resource
+	 */
+	@ReadOperation(produces = "application/octet-stream")
+	public synchronized WebEndpointResponse<Resource> download(@Selector String name) throws IOException {
+
+		InputStream data = RECORDING_SELECTOR.equals(name) && recording != null
+				&& recording.getState() != RecordingState.NEW ? recording.getStream(null, null) : null;
+
+		if (data == null)
+			return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+
+		return new WebEndpointResponse<>(new InputStreamResource(data));
+	}
+
+	@PreDestroy
+	public synchronized void close() {
+
+		if (recording != null)
+			recording.close();
+	}
+
+}
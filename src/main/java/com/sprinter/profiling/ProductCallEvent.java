@@ -0,0 +1,30 @@
+package com.sprinter.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the flight recorder events of the product API, the duration of the
+ * call is the duration of the event
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Category({ "Sprinter", "Product" })
+@StackTrace(false)
+public abstract class ProductCallEvent extends Event {
+
+	static final long NO_PRODUCT_ID = -1;
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Product Id")
+	long productId = NO_PRODUCT_ID;
+
+	@Label("Outcome")
+	String outcome;
+
+}
@@ -0,0 +1,118 @@
+package com.sprinter.profiling;
+
+import java.util.Collection;
+import java.util.Optional;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.sprinter.model.ProductModel;
+
+/**
+ * Emits a flight recorder event for every controller call, service method
+ * and repository query. When no recording has the events enabled the call
+ * goes straight through and nothing is allocated but the event itself.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "sprinter.profiling.events.enabled", matchIfMissing = true)
+public class ProfilingAspect {
+
+	@Around("within(com.sprinter.controller..*)")
+	public Object controllerCall(ProceedingJoinPoint joinPoint) throws Throwable {
+		return record(new ControllerCallEvent(), joinPoint);
+	}
+
+	@Around("execution(* com.sprinter.service.*Service.*(..))")
+	public Object serviceCall(ProceedingJoinPoint joinPoint) throws Throwable {
+		return record(new ServiceCallEvent(), joinPoint);
+	}
+
+	@Around("execution(* *(..)) && (target(com.sprinter.persistence.repository.ProductRepository)"
+			+ " || target(com.sprinter.persistence.repository.ProductJdbcRepository))")
+	public Object repositoryQuery(ProceedingJoinPoint joinPoint) throws Throwable {
+		return record(new RepositoryQueryEvent(), joinPoint);
+	}
+
+	private Object record(ProductCallEvent event, ProceedingJoinPoint joinPoint) throws Throwable {
+
+		if (!event.isEnabled())
+			return joinPoint.proceed();
+
+		String outcome = "ok";
+		Object result = null;
+
+		event.begin();
+
+		try {
+
+			result = joinPoint.proceed();
+			return result;
+
+		} catch (Throwable ex) {
+
+			outcome = outcome(ex);
+			throw ex;
+
+		} finally {
+
+			event.end();
+
+			if (event.shouldCommit()) {
+
+				event.operation = joinPoint.getSignature().toShortString();
+				event.productId = productId(joinPoint.getArgs());
+				event.outcome = outcome;
+
+				if (event instanceof RepositoryQueryEvent)
+					((RepositoryQueryEvent) event).rows = rows(result);
+
+				event.commit();
+			}
+		}
+	}
+
+	private static String outcome(Throwable ex) {
+
+		if (ex instanceof ResponseStatusException)
+			return String.valueOf(((ResponseStatusException) ex).getRawStatusCode());
+
+		return ex.getClass().getSimpleName();
+	}
+
+	private static long productId(Object[] args) {
+
+		if (args.length == 0)
+			return ProductCallEvent.NO_PRODUCT_ID;
+
+		if (args[0] instanceof Long)
+			return (Long) args[0];
+
+		if (args[0] instanceof ProductModel)
+			return ((ProductModel) args[0]).getId();
+
+		return ProductCallEvent.NO_PRODUCT_ID;
+	}
+
+	private static long rows(Object result) {
+
+		if (result == null)
+			return 0;
+
+		if (result instanceof Collection)
+			return ((Collection<?>) result).size();
+
+		if (result instanceof Optional)
+			return ((Optional<?>) result).isPresent() ? 1 : 0;
+
+		return 1;
+	}
+
+}
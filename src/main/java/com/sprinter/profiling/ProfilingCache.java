@@ -0,0 +1,123 @@
+package com.sprinter.profiling;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.cache.Cache;
+
+/**
+ * Cache decorator that emits a flight recorder event for every lookup
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ProfilingCache implements Cache {
+
+	private final Cache delegate;
+
+	public ProfilingCache(Cache delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public String getName() {
+		return delegate.getName();
+	}
+
+	@Override
+	public Object getNativeCache() {
+		return delegate.getNativeCache();
+	}
+
+	@Override
+	public ValueWrapper get(Object key) {
+
+		CacheLookupEvent event = new CacheLookupEvent();
+
+		if (!event.isEnabled())
+			return delegate.get(key);
+
+		event.begin();
+		ValueWrapper value = delegate.get(key);
+		commit(event, key, value != null);
+
+		return value;
+	}
+
+	@Override
+	public <T> T get(Object key, Class<T> type) {
+
+		CacheLookupEvent event = new CacheLookupEvent();
+
+		if (!event.isEnabled())
+			return delegate.get(key, type);
+
+		event.begin();
+		T value = delegate.get(key, type);
+		commit(event, key, value != null);
+
+		return value;
+	}
+
+	@Override
+	public <T> T get(Object key, Callable<T> valueLoader) {
+
+		CacheLookupEvent event = new CacheLookupEvent();
+
+		if (!event.isEnabled())
+			return delegate.get(key, valueLoader);
+
+		boolean[] loaded = new boolean[1];
+
+		event.begin();
+		T value = delegate.get(key, () -> {
+			loaded[0] = true;
+			return valueLoader.call();
+		});
+		commit(event, key, !loaded[0]);
+
+		return value;
+	}
+
+	@Override
+	public void put(Object key, Object value) {
+		delegate.put(key, value);
+	}
+
+	@Override
+	public ValueWrapper putIfAbsent(Object key, Object value) {
+		return delegate.putIfAbsent(key, value);
+	}
+
+	@Override
+	public void evict(Object key) {
+		delegate.evict(key);
+	}
+
+	@Override
+	public boolean evictIfPresent(Object key) {
+		return delegate.evictIfPresent(key);
+	}
+
+	@Override
+	public void clear() {
+		delegate.clear();
+	}
+
+	@Override
+	public boolean invalidate() {
+		return delegate.invalidate();
+	}
+
+	private void commit(CacheLookupEvent event, Object key, boolean hit) {
+
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.cache = delegate.getName();
+			event.key = String.valueOf(key);
+			event.hit = hit;
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package com.sprinter.profiling;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Hands out the caches of the delegate wrapped in a ProfilingCache
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ProfilingCacheManager implements CacheManager {
+
+	private final CacheManager delegate;
+	private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+	public ProfilingCacheManager(CacheManager delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Cache getCache(String name) {
+
+		Cache cache = caches.get(name);
+
+		if (cache != null)
+			return cache;
+
+		Cache delegateCache = delegate.getCache(name);
+
+		return delegateCache != null ? caches.computeIfAbsent(name, key -> new ProfilingCache(delegateCache)) : null;
+	}
+
+	@Override
+	public Collection<String> getCacheNames() {
+		return delegate.getCacheNames();
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.sprinter.profiling;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Name("com.sprinter.RepositoryQuery")
+@Label("Repository Query")
+public class RepositoryQueryEvent extends ProductCallEvent {
+
+	@Label("Rows")
+	long rows;
+
+}
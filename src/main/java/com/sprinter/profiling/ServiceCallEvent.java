@@ -0,0 +1,15 @@
+package com.sprinter.profiling;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Name("com.sprinter.ServiceCall")
+@Label("Service Call")
+public class ServiceCallEvent extends ProductCallEvent {
+
+}
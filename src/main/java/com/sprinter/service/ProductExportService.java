@@ -0,0 +1,20 @@
+package com.sprinter.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import com.sprinter.model.ExportFormat;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public interface ProductExportService {
+
+	long export(ExportFormat format, OutputStream outputStream) throws IOException;
+
+	long export(ExportFormat format, Path path) throws IOException;
+
+}
@@ -0,0 +1,18 @@
+package com.sprinter.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.sprinter.model.ExportFormat;
+import com.sprinter.model.ImportReportModel;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public interface ProductImportService {
+
+	ImportReportModel importProducts(ExportFormat format, InputStream inputStream) throws IOException;
+
+}
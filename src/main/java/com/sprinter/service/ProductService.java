@@ -1,10 +1,15 @@
 package com.sprinter.service;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sprinter.model.ProductLookupModel;
 import com.sprinter.model.ProductModel;
+import com.sprinter.model.ProductStatsModel;
 
 /**
  * 
@@ -16,12 +21,28 @@ public interface ProductService {
 
 	List<ProductModel> findAll();
 
+	List<ProductModel> loadAll();
+
+	List<ProductModel> findPage(long afterId, int limit);
+
 	ProductModel findById(long id);
 
+	ProductLookupModel findAllById(List<Long> ids);
+
+	ProductStatsModel stats();
+
+	long writeAll(JsonGenerator generator) throws IOException;
+
+	boolean writeById(long id, JsonGenerator generator) throws IOException;
+
 	ProductModel create(ProductModel productModel);
 
 	ProductModel update(ProductModel productModel);
 
+	ProductModel patch(long id, Map<String, Object> patch);
+
 	void deleteById(long id);
 
+	void reloadSnapshot();
+
 }
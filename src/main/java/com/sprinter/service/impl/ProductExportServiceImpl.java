@@ -0,0 +1,300 @@
+package com.sprinter.service.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.deadline.Deadline;
+import com.sprinter.mapper.ProductMapper;
+import com.sprinter.model.ExportFormat;
+import com.sprinter.model.ProductModel;
+import com.sprinter.persistence.entity.ProductEntity;
+import com.sprinter.persistence.repository.ProductRepository;
+import com.sprinter.service.ProductExportService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exports the catalogue splitting the id range into chunks that are read and
+ * encoded concurrently, each on its own connection, and written in id order.
+ * Chunks of every export run on one shared pool, an export keeps at most
+ * twice its parallelism of chunks in flight.
+ * With shards every chunk is read from all shards and merged by id. Chunks
+ * are read within the deadline of the request, and no chunk is started once
+ * it passed.
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+public class ProductExportServiceImpl implements ProductExportService {
+
+	private final ProductRepository productRepository;
+	private final ExecutorService executor;
+	private final int chunkSize;
+	private final int parallelism;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final CsvMapper csvMapper = CsvMapper.builder().disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+			.build();
+	private final CsvSchema csvSchema = csvMapper.schemaFor(ProductModel.class).withoutHeader();
+
+	private ShardRouter shardRouter;
+
+	public ProductExportServiceImpl(ProductRepository productRepository, ExecutorService executor, int chunkSize,
+			int parallelism) {
+		this.productRepository = productRepository;
+		this.executor = executor;
+		this.chunkSize = Math.max(1, chunkSize);
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public void setShardRouter(ShardRouter shardRouter) {
+		this.shardRouter = shardRouter;
+	}
+
+	/**
+	 * Method to export all products to a stream
+	 * 
+	 * @param format       ExportFormat
+	 * @param outputStream OutputStream
+	 * 
+	 * @return long exported products
+	 */
+	@Override
+	public long export(ExportFormat format, OutputStream outputStream) throws IOException {
+
+		return export(format, buffers -> {
+			for (ByteBuffer buffer : buffers)
+				outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		});
+	}
+
+	/**
+	 * Method to export all products to a file using gathering writes
+	 * 
+	 * @param format ExportFormat
+	 * @param path   Path
+	 * 
+	 * @return long exported products
+	 */
+	@Override
+	public long export(ExportFormat format, Path path) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			return export(format, buffers -> {
+				while (Arrays.stream(buffers).anyMatch(ByteBuffer::hasRemaining))
+					channel.write(buffers);
+			});
+		}
+	}
+
+	private long export(ExportFormat format, ChunkSink sink) throws IOException {
+
+		if (format == ExportFormat.CSV)
+			sink.write(new ByteBuffer[] { csvHeader() });
+
+		Long minId = scatter(shard -> productRepository.findMinId()).stream().filter(id -> id != null)
+				.min(Long::compare).orElse(null);
+		Long maxId = scatter(shard -> productRepository.findMaxId()).stream().filter(id -> id != null)
+				.max(Long::compare).orElse(null);
+
+		if (minId == null || maxId == null)
+			return 0;
+
+		long count = scatter(shard -> productRepository.count()).stream().mapToLong(Long::longValue).sum();
+		long chunks = Math.max(1, (count + chunkSize - 1) / chunkSize);
+		long width = (maxId - minId) / chunks + 1;
+
+		Deque<Future<Chunk>> pending = new ArrayDeque<>();
+		Deadline deadline = Deadline.current();
+		long exported = 0;
+
+		try {
+
+			long fromId = minId;
+
+			while (true) {
+
+				long toId = maxId - fromId < width ? maxId : fromId + width - 1;
+				long chunkFromId = fromId;
+				Deadline.checkCurrent();
+				pending.add(executor.submit(() -> Deadline.with(deadline, () -> encode(format, chunkFromId, toId))));
+
+				if (pending.size() >= parallelism * 2)
+					exported += drain(pending, sink);
+
+				if (toId == maxId)
+					break;
+
+				fromId = toId + 1;
+			}
+
+			while (!pending.isEmpty())
+				exported += drain(pending, sink);
+
+		} finally {
+			for (Future<Chunk> future : pending)
+				future.cancel(true);
+		}
+
+		log.info("Exported {} products in {} chunks", exported, chunks);
+
+		return exported;
+	}
+
+	/**
+	 * Waits for the oldest chunk and writes it together with every following
+	 * chunk that is already encoded in a single gathering write
+	 */
+	private long drain(Deque<Future<Chunk>> pending, ChunkSink sink) throws IOException {
+
+		List<Chunk> ready = new ArrayList<>();
+		ready.add(await(pending.poll()));
+
+		while (!pending.isEmpty() && pending.peek().isDone())
+			ready.add(await(pending.poll()));
+
+		ByteBuffer[] buffers = new ByteBuffer[ready.size()];
+		long count = 0;
+
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = ready.get(i).buffer;
+			count += ready.get(i).count;
+		}
+
+		sink.write(buffers);
+
+		return count;
+	}
+
+	private Chunk await(Future<Chunk> future) throws IOException {
+
+		try {
+
+			return future.get();
+
+		} catch (InterruptedException ex) {
+
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Export interrupted");
+
+		} catch (ExecutionException ex) {
+
+			if (ex.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) ex.getCause()).getCause();
+
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+
+			throw new IllegalStateException("Export chunk failed", ex.getCause());
+		}
+	}
+
+	private Chunk encode(ExportFormat format, long fromId, long toId) {
+
+		try {
+
+			return encodeChunk(format, fromId, toId);
+
+		} catch (IOException ex) {
+
+			throw new UncheckedIOException(ex);
+
+		}
+	}
+
+	private Chunk encodeChunk(ExportFormat format, long fromId, long toId) throws IOException {
+
+		List<ProductEntity> result = ShardRouter.merge(
+				scatter(shard -> productRepository.findByIdBetweenOrderByIdAsc(fromId, toId)),
+				Comparator.comparingLong(ProductEntity::getId), Integer.MAX_VALUE);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, result.size() * 64));
+
+		if (format == ExportFormat.CSV) {
+
+			try (SequenceWriter writer = csvMapper.writer(csvSchema).writeValues(out)) {
+				for (ProductEntity productEntity : result)
+					writer.write(ProductMapper.INSTANCE.productEntityToProductModel(productEntity));
+			}
+
+		} else {
+
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+				generator.setRootValueSeparator(new SerializedString("\n"));
+				for (ProductEntity productEntity : result)
+					objectMapper.writeValue(generator,
+							ProductMapper.INSTANCE.productEntityToProductModel(productEntity));
+				if (!result.isEmpty())
+					generator.writeRaw('\n');
+			}
+		}
+
+		return new Chunk(ByteBuffer.wrap(out.toByteArray()), result.size());
+	}
+
+	private <T> List<T> scatter(IntFunction<T> work) {
+		return shardRouter != null ? shardRouter.scatter(work) : Collections.singletonList(work.apply(0));
+	}
+
+	private ByteBuffer csvHeader() {
+
+		StringBuilder header = new StringBuilder();
+
+		for (CsvSchema.Column column : csvSchema) {
+			if (header.length() > 0)
+				header.append(csvSchema.getColumnSeparator());
+			header.append(column.getName());
+		}
+
+		return ByteBuffer.wrap(header.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private interface ChunkSink {
+
+		void write(ByteBuffer[] buffers) throws IOException;
+
+	}
+
+	private static class Chunk {
+
+		private final ByteBuffer buffer;
+		private final int count;
+
+		Chunk(ByteBuffer buffer, int count) {
+			this.buffer = buffer;
+			this.count = count;
+		}
+
+	}
+
+}
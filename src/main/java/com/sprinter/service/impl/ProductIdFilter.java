@@ -0,0 +1,272 @@
+package com.sprinter.service.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Bloom filter over the ids of the stored products, a negative answer is
+ * definite so those lookups never reach the database. Adding an id is lock
+ * free and never races a rebuild into losing the id. Ids cannot be removed,
+ * so deleted ids keep passing the filter until the next rebuild, which also
+ * resizes it for the current catalogue. Until the first build every id
+ * passes.
+ * <p>
+ * Each instance keeps its own filter and only sees the ids created through
+ * it until the next rebuild, so it is only for single-instance deployments:
+ * with replicas a product created on another instance would be answered as
+ * missing.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ProductIdFilter implements MeterBinder {
+
+	private final int minExpectedInsertions;
+	private final double falsePositiveRate;
+
+	private final AtomicReference<Filters> filters = new AtomicReference<>(new Filters(null, null));
+
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder negativeCacheHits = new LongAdder();
+	private final LongAdder falsePositives = new LongAdder();
+
+	public ProductIdFilter(int minExpectedInsertions, double falsePositiveRate) {
+		this.minExpectedInsertions = Math.max(1, minExpectedInsertions);
+		this.falsePositiveRate = falsePositiveRate;
+	}
+
+	/**
+	 * Method to start a rebuild, ids added from now on go to the new filter as
+	 * well so none is lost while the stored ids are being loaded
+	 *
+	 * @param count long stored products
+	 */
+	public void startRebuild(long count) {
+
+		Bits next = new Bits(Math.max(minExpectedInsertions, 2 * count), falsePositiveRate);
+
+		filters.updateAndGet(current -> new Filters(current.bits, next));
+	}
+
+	/**
+	 * Method to publish the filter started by startRebuild once every stored id
+	 * was added
+	 *
+	 */
+	public void finishRebuild() {
+		filters.updateAndGet(current -> current.building != null ? new Filters(current.building, null) : current);
+	}
+
+	/**
+	 * Method to add an id. If a rebuild starts or finishes meanwhile the id is
+	 * added again to the filters in use then, so it is never left only in a
+	 * filter that was dropped.
+	 *
+	 * @param id long
+	 */
+	public void add(long id) {
+
+		Filters current = filters.get();
+
+		while (true) {
+
+			current.add(id);
+
+			Filters next = filters.get();
+
+			if (next == current)
+				return;
+
+			current = next;
+		}
+	}
+
+	/**
+	 * Method to add an id while rebuilding, it only goes to the new filter
+	 *
+	 * @param id long
+	 */
+	public void addRebuilt(long id) {
+
+		Bits next = filters.get().building;
+
+		if (next != null)
+			next.add(id);
+	}
+
+	/**
+	 * Method to check if a product may exist, false is definite and is counted
+	 * as a database query avoided
+	 *
+	 * @param id long
+	 *
+	 * @return boolean
+	 */
+	public boolean mightContain(long id) {
+
+		Bits current = filters.get().bits;
+
+		if (current == null || current.mightContain(id))
+			return true;
+
+		rejected.increment();
+		return false;
+	}
+
+	public void recordNegativeCacheHit() {
+		negativeCacheHits.increment();
+	}
+
+	public void recordFalsePositive() {
+		falsePositives.increment();
+	}
+
+	/**
+	 * Method to get the share of missing ids that passed the filter
+	 *
+	 * @return double
+	 */
+	public double observedFalsePositiveRate() {
+
+		double falsePositive = falsePositives.sum();
+		double negatives = falsePositive + rejected.sum();
+
+		return negatives > 0 ? falsePositive / negatives : 0;
+	}
+
+	/**
+	 * Method to get the false positive rate expected for the ids added so far
+	 *
+	 * @return double
+	 */
+	public double expectedFalsePositiveRate() {
+
+		Bits current = filters.get().bits;
+
+		return current != null ? current.expectedFalsePositiveRate() : 0;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+
+		FunctionCounter.builder("sprinter.product.lookups.avoided", rejected, LongAdder::sum).tag("reason", "id_filter")
+				.description("Product lookups answered as missing without a database query").register(registry);
+		FunctionCounter.builder("sprinter.product.lookups.avoided", negativeCacheHits, LongAdder::sum)
+				.tag("reason", "negative_cache")
+				.description("Product lookups answered as missing without a database query").register(registry);
+		FunctionCounter.builder("sprinter.product.id-filter.false-positives", falsePositives, LongAdder::sum)
+				.description("Missing products that passed the id filter").register(registry);
+		Gauge.builder("sprinter.product.id-filter.false-positive-rate", this,
+				ProductIdFilter::observedFalsePositiveRate).description("Observed id filter false positive rate")
+				.register(registry);
+		Gauge.builder("sprinter.product.id-filter.expected-false-positive-rate", this,
+				ProductIdFilter::expectedFalsePositiveRate).description("Expected id filter false positive rate")
+				.register(registry);
+	}
+
+	/**
+	 * The filter in use and the one being rebuilt, replaced together so an add
+	 * sees both of the same moment
+	 */
+	private static class Filters {
+
+		private final Bits bits;
+		private final Bits building;
+
+		Filters(Bits bits, Bits building) {
+			this.bits = bits;
+			this.building = building;
+		}
+
+		void add(long id) {
+
+			if (bits != null)
+				bits.add(id);
+
+			if (building != null)
+				building.add(id);
+		}
+
+	}
+
+	private static class Bits {
+
+		private final AtomicLongArray words;
+		private final long size;
+		private final int hashes;
+		private final LongAdder inserted = new LongAdder();
+
+		Bits(long expectedInsertions, double falsePositiveRate) {
+
+			long bits = (long) Math
+					.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+			int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+
+			this.words = new AtomicLongArray(wordCount);
+			this.size = (long) wordCount << 6;
+			this.hashes = (int) Math.max(1, Math.round((double) size / expectedInsertions * Math.log(2)));
+		}
+
+		void add(long id) {
+
+			long hash = mix(id);
+			int first = (int) hash;
+			int second = (int) (hash >>> 32);
+
+			for (int i = 1; i <= hashes; i++) {
+
+				long bit = ((first + (long) i * second) & Long.MAX_VALUE) % size;
+				int word = (int) (bit >>> 6);
+				long mask = 1L << bit;
+
+				long value = words.get(word);
+
+				while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask))
+					value = words.get(word);
+			}
+
+			inserted.increment();
+		}
+
+		boolean mightContain(long id) {
+
+			long hash = mix(id);
+			int first = (int) hash;
+			int second = (int) (hash >>> 32);
+
+			for (int i = 1; i <= hashes; i++) {
+
+				long bit = ((first + (long) i * second) & Long.MAX_VALUE) % size;
+
+				if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+					return false;
+			}
+
+			return true;
+		}
+
+		double expectedFalsePositiveRate() {
+			return Math.pow(1 - Math.exp(-hashes * (double) inserted.sum() / size), hashes);
+		}
+
+		/**
+		 * SplitMix64 finalizer, sequential ids end up spread over all the bits
+		 */
+		private static long mix(long id) {
+
+			long z = id + 0x9E3779B97F4A7C15L;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+			return z ^ (z >>> 31);
+		}
+
+	}
+
+}
@@ -0,0 +1,421 @@
+package com.sprinter.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.deadline.Deadline;
+import com.sprinter.filter.MdcTaskWrapping;
+import com.sprinter.mapper.ProductMapper;
+import com.sprinter.model.ExportFormat;
+import com.sprinter.model.ImportErrorModel;
+import com.sprinter.model.ImportReportModel;
+import com.sprinter.model.ProductModel;
+import com.sprinter.persistence.entity.ProductEntity;
+import com.sprinter.persistence.id.ProductIdGenerator;
+import com.sprinter.persistence.repository.ProductRepository;
+import com.sprinter.service.ProductImportService;
+import com.sprinter.service.ProductService;
+
+import io.opentelemetry.context.Context;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Imports products from a streamed upload. The request thread parses records
+ * one at a time and hands validated batches through a bounded queue to a
+ * writer thread that upserts each batch in its own transaction, so memory is
+ * bounded by the batch size and queue capacity whatever the upload size.
+ * The product caches are cleared and the catalogue snapshot is reloaded once
+ * the import ends, also when it fails after some batches were written.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+public class ProductImportServiceImpl implements ProductImportService {
+
+	static final int MAX_COLUMN_LENGTH = 255;
+	static final int MAX_REPORTED_ERRORS = 100;
+
+	static final List<String> IMPORTED_CACHES = Collections
+			.unmodifiableList(Arrays.asList("products", "product", "missingProduct"));
+
+	private static final ImportBatch END_OF_INPUT = new ImportBatch(0, Collections.emptyList());
+
+	private final ProductRepository productRepository;
+	private final EntityManager entityManager;
+	private final TransactionTemplate transactionTemplate;
+	private final int batchSize;
+	private final int queueCapacity;
+
+	private ProductIdFilter productIdFilter;
+
+	private ShardRouter shardRouter;
+
+	private ProductIdGenerator productIdGenerator;
+
+	private ProductService productService;
+
+	private CacheManager cacheManager;
+
+	private final ObjectReader ndjsonReader = new ObjectMapper().readerFor(ProductModel.class);
+	private final ObjectReader csvReader = new CsvMapper().readerFor(ProductModel.class)
+			.with(CsvSchema.emptySchema().withHeader());
+
+	public ProductImportServiceImpl(ProductRepository productRepository, EntityManager entityManager,
+			TransactionTemplate transactionTemplate, int batchSize, int queueCapacity) {
+		this.productRepository = productRepository;
+		this.entityManager = entityManager;
+		this.transactionTemplate = transactionTemplate;
+		this.batchSize = Math.max(1, batchSize);
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	public void setProductIdFilter(ProductIdFilter productIdFilter) {
+		this.productIdFilter = productIdFilter;
+	}
+
+	public void setShardRouter(ShardRouter shardRouter) {
+		this.shardRouter = shardRouter;
+	}
+
+	public void setProductIdGenerator(ProductIdGenerator productIdGenerator) {
+		this.productIdGenerator = productIdGenerator;
+	}
+
+	public void setProductService(ProductService productService) {
+		this.productService = productService;
+	}
+
+	public void setCacheManager(CacheManager cacheManager) {
+		this.cacheManager = cacheManager;
+	}
+
+	/**
+	 * Method to import products from a NDJSON or CSV stream
+	 *
+	 * @param format      ExportFormat
+	 * @param inputStream InputStream
+	 *
+	 * @return ImportReportModel
+	 */
+	@Override
+	public ImportReportModel importProducts(ExportFormat format, InputStream inputStream) throws IOException {
+
+		long start = System.nanoTime();
+
+		ImportProgress progress = new ImportProgress();
+		BlockingQueue<ImportBatch> queue = new ArrayBlockingQueue<>(queueCapacity);
+		ExecutorService executor = MdcTaskWrapping.wrap(Context.taskWrapping(Executors.newSingleThreadExecutor()));
+		Deadline deadline = Deadline.current();
+
+		try {
+
+			Future<?> writer = executor.submit(() -> Deadline.with(deadline, () -> {
+				write(queue, progress);
+				return null;
+			}));
+
+			try (MappingIterator<ProductModel> iterator = (format == ExportFormat.CSV ? csvReader : ndjsonReader)
+					.readValues(inputStream)) {
+				read(iterator, queue, writer, progress);
+			}
+
+			enqueue(queue, END_OF_INPUT, writer);
+			await(writer);
+
+		} finally {
+
+			executor.shutdownNow();
+
+			clearCaches();
+
+			if (productService != null)
+				productService.reloadSnapshot();
+		}
+
+		ImportReportModel report = ImportReportModel.builder().received(progress.received.get())
+				.imported(progress.imported.get()).failed(progress.failed.get()).batches(progress.batches.get())
+				.elapsedMillis((System.nanoTime() - start) / 1_000_000).errors(progress.errors).build();
+
+		log.info("Imported {} of {} products in {} batches", report.getImported(), report.getReceived(),
+				report.getBatches());
+
+		return report;
+	}
+
+	private void clearCaches() {
+
+		if (cacheManager == null)
+			return;
+
+		for (String name : IMPORTED_CACHES) {
+
+			Cache cache = cacheManager.getCache(name);
+
+			if (cache != null)
+				cache.clear();
+		}
+	}
+
+	private void read(MappingIterator<ProductModel> iterator, BlockingQueue<ImportBatch> queue,
+			Future<?> writer, ImportProgress progress) throws IOException {
+
+		List<ProductEntity> batch = new ArrayList<>(batchSize);
+		long firstRecord = 0;
+
+		while (true) {
+
+			ProductModel productModel;
+
+			try {
+
+				if (!iterator.hasNextValue())
+					break;
+
+				productModel = iterator.nextValue();
+
+			} catch (JsonMappingException ex) {
+
+				progress.fail(progress.received.incrementAndGet(), 1, ex.getOriginalMessage());
+				continue;
+
+			} catch (JsonProcessingException ex) {
+
+				progress.fail(progress.received.incrementAndGet(), 1,
+						"Malformed input, import stopped: " + ex.getOriginalMessage());
+				break;
+
+			}
+
+			long record = progress.received.incrementAndGet();
+
+			String error = validate(productModel);
+
+			if (error != null) {
+				progress.fail(record, 1, error);
+				continue;
+			}
+
+			if (productIdGenerator != null && productModel.getId() == 0)
+				productModel.setId(productIdGenerator.nextId());
+
+			if (batch.isEmpty())
+				firstRecord = record;
+
+			batch.add(ProductMapper.INSTANCE.productModelToProductEntity(productModel));
+
+			if (batch.size() == batchSize) {
+				enqueue(queue, new ImportBatch(firstRecord, batch), writer);
+				batch = new ArrayList<>(batchSize);
+			}
+		}
+
+		if (!batch.isEmpty())
+			enqueue(queue, new ImportBatch(firstRecord, batch), writer);
+	}
+
+	private String validate(ProductModel productModel) {
+
+		if (productModel.getId() == 0 && productIdGenerator == null)
+			return "Product id is required, the server does not assign ids";
+
+		if (productModel.getName() == null || productModel.getName().trim().isEmpty())
+			return "Product " + productModel.getId() + ": name is required";
+
+		if (productModel.getDescription() == null || productModel.getDescription().trim().isEmpty())
+			return "Product " + productModel.getId() + ": description is required";
+
+		if (productModel.getName().length() > MAX_COLUMN_LENGTH
+				|| productModel.getDescription().length() > MAX_COLUMN_LENGTH)
+			return "Product " + productModel.getId() + ": name and description are limited to " + MAX_COLUMN_LENGTH
+					+ " characters";
+
+		return null;
+	}
+
+	private void write(BlockingQueue<ImportBatch> queue, ImportProgress progress) {
+
+		while (true) {
+
+			ImportBatch batch;
+
+			try {
+
+				batch = queue.take();
+
+			} catch (InterruptedException ex) {
+
+				Thread.currentThread().interrupt();
+				return;
+
+			}
+
+			if (batch == END_OF_INPUT)
+				return;
+
+			try {
+
+				writeBatch(batch.products);
+				progress.imported.addAndGet(batch.products.size());
+
+				if (productIdFilter != null)
+					batch.products.forEach(productEntity -> productIdFilter.add(productEntity.getId()));
+
+			} catch (RuntimeException ex) {
+
+				progress.fail(batch.firstRecord, batch.products.size(), "Batch failed: " + ex.getMessage());
+
+			}
+
+			if (progress.batches.incrementAndGet() % 100 == 0)
+				log.info("Import progress: {} products imported", progress.imported.get());
+		}
+	}
+
+	/**
+	 * With shards a batch is written as one transaction per shard, a failure
+	 * reports the whole batch even if some shards committed their part
+	 */
+	private void writeBatch(List<ProductEntity> products) {
+
+		if (shardRouter == null || shardRouter.getShardCount() == 1) {
+			transactionTemplate.executeWithoutResult(status -> upsert(products));
+			return;
+		}
+
+		shardRouter.partition(products, ProductEntity::getId).forEach((shard, part) -> shardRouter.on(shard,
+				() -> transactionTemplate.execute(status -> {
+					upsert(part);
+					return null;
+				})));
+	}
+
+	/**
+	 * Loads the existing rows of the batch with a single query so they are
+	 * updated in place, and persists the rest without a select per row once
+	 * the tombstones of deleted products with the same ids are purged
+	 */
+	private void upsert(List<ProductEntity> batch) {
+
+		Map<Long, ProductEntity> incoming = new LinkedHashMap<>();
+		for (ProductEntity productEntity : batch)
+			incoming.put(productEntity.getId(), productEntity);
+
+		Map<Long, ProductEntity> existing = new LinkedHashMap<>();
+		for (ProductEntity productEntity : productRepository.findAllById(incoming.keySet()))
+			existing.put(productEntity.getId(), productEntity);
+
+		if (existing.size() < incoming.size())
+			productRepository.purgeTombstones(incoming.keySet());
+
+		for (ProductEntity productEntity : incoming.values()) {
+
+			ProductEntity managed = existing.get(productEntity.getId());
+
+			if (managed == null) {
+				entityManager.persist(productEntity);
+			} else {
+				managed.setName(productEntity.getName());
+				managed.setDescription(productEntity.getDescription());
+			}
+		}
+	}
+
+	private void enqueue(BlockingQueue<ImportBatch> queue, ImportBatch batch, Future<?> writer)
+			throws IOException {
+
+		try {
+
+			while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				if (writer.isDone()) {
+					await(writer);
+					throw new IllegalStateException("Import writer stopped");
+				}
+			}
+
+		} catch (InterruptedException ex) {
+
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Import interrupted");
+
+		}
+	}
+
+	private void await(Future<?> writer) throws IOException {
+
+		try {
+
+			writer.get();
+
+		} catch (InterruptedException ex) {
+
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Import interrupted");
+
+		} catch (ExecutionException ex) {
+
+			throw new IllegalStateException("Import writer failed", ex.getCause());
+
+		}
+	}
+
+	private static class ImportProgress {
+
+		private final AtomicLong received = new AtomicLong();
+		private final AtomicLong imported = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicLong batches = new AtomicLong();
+		private final List<ImportErrorModel> errors = Collections.synchronizedList(new ArrayList<>());
+
+		void fail(long record, long records, String message) {
+
+			failed.addAndGet(records);
+
+			if (errors.size() < MAX_REPORTED_ERRORS)
+				errors.add(ImportErrorModel.builder().record(record).message(message).build());
+		}
+
+	}
+
+	private static class ImportBatch {
+
+		private final long firstRecord;
+		private final List<ProductEntity> products;
+
+		ImportBatch(long firstRecord, List<ProductEntity> products) {
+			this.firstRecord = firstRecord;
+			this.products = products;
+		}
+
+	}
+
+}
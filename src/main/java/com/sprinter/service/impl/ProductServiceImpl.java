@@ -1,39 +1,198 @@
 package com.sprinter.service.impl;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.sprinter.controller.ProductApiController;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.deadline.Deadline;
+import com.sprinter.exception.BadRequestException;
 import com.sprinter.exception.ConflictException;
 import com.sprinter.exception.NotFoundException;
 import com.sprinter.mapper.ProductMapper;
+import com.sprinter.model.ProductLookupModel;
 import com.sprinter.model.ProductModel;
+import com.sprinter.model.ProductStatsModel;
 import com.sprinter.persistence.entity.ProductEntity;
+import com.sprinter.persistence.id.ProductIdGenerator;
+import com.sprinter.persistence.repository.ProductJdbcRepository;
 import com.sprinter.persistence.repository.ProductRepository;
 import com.sprinter.service.ProductService;
 
-import lombok.extern.java.Log;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * 
  * @author Álvaro Aglio Sánchez
  *
  */
-@Log
+@Slf4j
 public class ProductServiceImpl implements ProductService {
 
 	private ProductRepository productRepository;
 
+	private ProductJdbcRepository productJdbcRepository;
+
 	static final String notFoundException = "Product not found: ";
 	static final String conflictException = "Product with id already exists: ";
+	static final String versionConflictException = "Product was modified concurrently: ";
+	static final String badRequestException = "Invalid patch for product: ";
+
+	static final long UPDATE_RETRY_BASE_DELAY_MILLIS = 5;
+	static final int LOOKUP_MAX_IDS = 1000;
+	static final int LOOKUP_CHUNK_SIZE = 500;
+	static final int SNAPSHOT_RELOAD_ATTEMPTS = 3;
+	static final int PAGE_MAX_SIZE = 1000;
+	static final int CACHE_WRITE_STRIPES = 1024;
+
+	static final Sort BY_ID = Sort.by("id");
+	static final Comparator<ProductEntity> ENTITY_ID_ORDER = Comparator.comparingLong(ProductEntity::getId);
+
+	private int updateRetryAttempts = 3;
+
+	private Cache productCache;
+
+	private Cache missingProductCache;
+
+	private ProductIdFilter productIdFilter;
+
+	private boolean snapshotEnabled;
+
+	private TransactionTemplate transactionTemplate;
+
+	private ShardRouter shardRouter;
+
+	private ProductIdGenerator productIdGenerator;
+
+	private final AtomicReference<ProductSnapshot> snapshot = new AtomicReference<>();
 
-	public ProductServiceImpl(ProductRepository productRepository) {
+	private final AtomicLong snapshotWrites = new AtomicLong();
+
+	/**
+	 * Held to publish a write or a reloaded snapshot, so a reload that raced a
+	 * write is never published
+	 */
+	private final Object snapshotLock = new Object();
+
+	/**
+	 * Writes count up the stripe of their id before evicting it, a read that
+	 * sees its stripe moved while it loaded the row evicts what it cached
+	 */
+	private final AtomicLongArray cacheWrites = new AtomicLongArray(CACHE_WRITE_STRIPES);
+
+	private final ProductStatistics statistics = new ProductStatistics();
+
+	public ProductServiceImpl(ProductRepository productRepository, ProductJdbcRepository productJdbcRepository) {
 		this.productRepository = productRepository;
+		this.productJdbcRepository = productJdbcRepository;
+	}
+
+	public void setUpdateRetryAttempts(int updateRetryAttempts) {
+		this.updateRetryAttempts = Math.max(1, updateRetryAttempts);
+	}
+
+	public void setProductCache(Cache productCache) {
+		this.productCache = productCache;
+	}
+
+	public void setMissingProductCache(Cache missingProductCache) {
+		this.missingProductCache = missingProductCache;
+	}
+
+	public void setProductIdFilter(ProductIdFilter productIdFilter) {
+		this.productIdFilter = productIdFilter;
+	}
+
+	public void setSnapshotEnabled(boolean snapshotEnabled) {
+		this.snapshotEnabled = snapshotEnabled;
+	}
+
+	public void setTransactionTemplate(TransactionTemplate transactionTemplate) {
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	public void setShardRouter(ShardRouter shardRouter) {
+		this.shardRouter = shardRouter;
+	}
+
+	public void setProductIdGenerator(ProductIdGenerator productIdGenerator) {
+		this.productIdGenerator = productIdGenerator;
+	}
+
+	/**
+	 * Method to check if reads are served from the in-memory snapshot
+	 * 
+	 * @return boolean
+	 */
+	public boolean isServingSnapshot() {
+		return snapshot.get() != null;
+	}
+
+	/**
+	 * Method to reload the catalogue snapshot from the repository. Writes
+	 * published while the products were being loaded may be missing from the
+	 * new snapshot, in that case it is not published and is loaded again and,
+	 * if writes keep racing, reads go back to the repository until the next
+	 * reload. It is loaded from the primary, a lagging replica would leave
+	 * recent writes out.
+	 * 
+	 */
+	@Override
+	@Scheduled(fixedDelayString = "${sprinter.catalogue.snapshot.reload-interval-ms:300000}")
+	public void reloadSnapshot() {
+
+		if (!snapshotEnabled)
+			return;
+
+		for (int attempt = 1; attempt <= SNAPSHOT_RELOAD_ATTEMPTS; attempt++) {
+
+			long writes = snapshotWrites.get();
+
+			ProductSnapshot loaded = ProductSnapshot.of(findAllEntities(true));
+
+			synchronized (snapshotLock) {
+
+				if (snapshotWrites.get() == writes) {
+					snapshot.set(loaded);
+					log.info("Catalogue snapshot loaded with {} products", loaded.size());
+					return;
+				}
+			}
+		}
+
+		synchronized (snapshotLock) {
+			snapshot.set(null);
+		}
+
+		log.warn("Catalogue snapshot discarded, writes kept racing the reload");
 	}
 
 	/**
@@ -42,12 +201,31 @@ public class ProductServiceImpl implements ProductService {
 	 * @return List<ProductModel>
 	 */
 	@Override
-	@Cacheable("products")
+	@Transactional(readOnly = true)
+	@Cacheable(value = "products", condition = "!#root.target.servingSnapshot")
 	public List<ProductModel> findAll() {
 
-		List<ProductEntity> result = productRepository.findAll();
+		ProductSnapshot current = snapshot.get();
+
+		if (current != null)
+			return current.findAll();
 
-		log.info("Find " + result.size() + " products");
+		return loadAll();
+	}
+
+	/**
+	 * Method to load all products from the repository, the product listing
+	 * cache loads and refreshes its value with it
+	 * 
+	 * @return List<ProductModel>
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<ProductModel> loadAll() {
+
+		List<ProductEntity> result = findAllEntities(false);
+
+		log.debug("Find {} products", result.size());
 
 		if (result.isEmpty())
 			return new ArrayList<ProductModel>();
@@ -55,6 +233,37 @@ public class ProductServiceImpl implements ProductService {
 		return result.stream().map(ProductMapper.INSTANCE::productEntityToProductModel).collect(Collectors.toList());
 	}
 
+	/**
+	 * Method to find the products after an id in id order. Every shard returns
+	 * its first products after the id and the pages are merged by id.
+	 * 
+	 * @param afterId long
+	 * @param limit   int
+	 * 
+	 * @return List<ProductModel>
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<ProductModel> findPage(long afterId, int limit) {
+
+		if (limit < 1 || limit > PAGE_MAX_SIZE)
+			throw new BadRequestException("Page size must be between 1 and " + PAGE_MAX_SIZE);
+
+		ProductSnapshot current = snapshot.get();
+
+		if (current != null)
+			return current.findPage(afterId, limit);
+
+		PageRequest page = PageRequest.of(0, limit);
+		List<ProductEntity> result = isSharded()
+				? ShardRouter.merge(
+						shardRouter.scatter(shard -> productRepository.findByIdGreaterThanOrderByIdAsc(afterId, page)),
+						ENTITY_ID_ORDER, limit)
+				: productRepository.findByIdGreaterThanOrderByIdAsc(afterId, page);
+
+		return result.stream().map(ProductMapper.INSTANCE::productEntityToProductModel).collect(Collectors.toList());
+	}
+
 	/**
 	 * Method to find a product by id
 	 * 
@@ -63,18 +272,242 @@ public class ProductServiceImpl implements ProductService {
 	 * @return ProductModel
 	 */
 	@Override
+	@Transactional(readOnly = true)
 	public ProductModel findById(long id) {
 
-		Optional<ProductEntity> productEntityData = productRepository.findById(id);
+		ProductSnapshot current = snapshot.get();
 
-		if (!productEntityData.isPresent())
+		if (current != null) {
+
+			ProductModel productModel = current.find(id);
+
+			if (productModel == null)
+				throw new NotFoundException(notFoundException + id);
+
+			return productModel;
+		}
+
+		ProductModel cached = getCached(id);
+
+		if (cached != null)
+			return cached;
+
+		if (isKnownMissing(id))
+			throw new NotFoundException(notFoundException + id);
+
+		long writes = cacheWrites(id);
+		Optional<ProductEntity> productEntityData = onShardOf(id, () -> productRepository.findById(id));
+
+		if (!productEntityData.isPresent()) {
+			putMissing(id, writes);
 			throw new NotFoundException(notFoundException + id);
+		}
 
-		return ProductMapper.INSTANCE.productEntityToProductModel(productEntityData.get());
+		return putCachedIfAbsent(ProductMapper.INSTANCE.productEntityToProductModel(productEntityData.get()), writes);
 	}
 
 	/**
-	 * Method to create a product
+	 * Method to find many products by id. Ids are resolved from the cache first
+	 * and the misses are loaded with chunked IN queries; products keep the
+	 * request order and unknown ids are reported as missing.
+	 * 
+	 * @param ids List<Long>
+	 * 
+	 * @return ProductLookupModel
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public ProductLookupModel findAllById(List<Long> ids) {
+
+		Set<Long> requested = new LinkedHashSet<>(ids);
+
+		if (requested.size() > LOOKUP_MAX_IDS)
+			throw new BadRequestException("Too many ids, the limit is " + LOOKUP_MAX_IDS);
+
+		Map<Long, ProductModel> found = new HashMap<>(requested.size() * 2);
+		List<Long> misses = new ArrayList<>();
+		Map<Long, Long> writes = new HashMap<>();
+		ProductSnapshot current = snapshot.get();
+
+		for (Long id : requested) {
+
+			ProductModel cached = current != null ? current.find(id) : getCached(id);
+
+			if (cached != null)
+				found.put(id, cached);
+			else if (current == null && !isKnownMissing(id)) {
+				misses.add(id);
+				writes.put(id, cacheWrites(id));
+			}
+		}
+
+		for (ProductEntity productEntity : findAllEntitiesById(misses))
+			found.put(productEntity.getId(), putCachedIfAbsent(
+					ProductMapper.INSTANCE.productEntityToProductModel(productEntity),
+					writes.get(productEntity.getId())));
+
+		List<ProductModel> products = new ArrayList<>(found.size());
+		List<Long> missing = new ArrayList<>();
+
+		for (Long id : misses) {
+			if (!found.containsKey(id))
+				putMissing(id, writes.get(id));
+		}
+
+		for (Long id : requested) {
+
+			ProductModel productModel = found.get(id);
+
+			if (productModel != null)
+				products.add(productModel);
+			else
+				missing.add(id);
+		}
+
+		log.debug("Lookup of {} products, {} from cache, {} missing", requested.size(),
+				requested.size() - misses.size(), missing.size());
+
+		return ProductLookupModel.builder().products(products).missing(missing).build();
+	}
+
+	/**
+	 * Method to rebuild the id filter from the stored ids, this drops the ids
+	 * of deleted products and sizes the filter for the current catalogue. The
+	 * ids are read from the primary, an id missing from a lagging replica would
+	 * make its product unreachable until the next rebuild.
+	 * 
+	 */
+	@Scheduled(fixedDelayString = "${sprinter.product.id-filter.rebuild-interval-ms:600000}")
+	public void rebuildIdFilter() {
+
+		if (productIdFilter == null)
+			return;
+
+		productIdFilter.startRebuild(sum(scatter(shard -> inWriteTransaction(productRepository::count))));
+
+		for (List<Long> ids : scatter(shard -> inWriteTransaction(productRepository::findAllIds))) {
+			for (Long id : ids)
+				productIdFilter.addRebuilt(id);
+		}
+
+		productIdFilter.finishRebuild();
+
+		log.info("Product id filter rebuilt, expected false positive rate {}",
+				productIdFilter.expectedFalsePositiveRate());
+	}
+
+	/**
+	 * Method to get the product statistics kept by the write paths
+	 * 
+	 * @return ProductStatsModel
+	 */
+	@Override
+	public ProductStatsModel stats() {
+		return statistics.toModel();
+	}
+
+	/**
+	 * Method to reset the product total to the stored count, this also
+	 * accounts for rows written outside the service. The count is one query
+	 * per shard.
+	 * 
+	 */
+	@Scheduled(fixedDelayString = "${sprinter.product.stats.reconcile-interval-ms:60000}")
+	public void reconcileStats() {
+
+		long mark = statistics.markTotal();
+
+		statistics.reconcileTotal(sum(scatter(shard -> productRepository.count())), mark);
+
+		log.debug("Product total reconciled");
+	}
+
+	/**
+	 * Method to reset the name and description length distributions to the
+	 * stored ones. Each is a grouped aggregate over the whole table of every
+	 * shard, so it runs far less often than the total.
+	 * 
+	 */
+	@Scheduled(fixedDelayString = "${sprinter.product.stats.lengths-reconcile-interval-ms:3600000}")
+	public void reconcileLengthStats() {
+
+		long[][] marks = statistics.markLengths();
+
+		statistics.reconcileLengths(concat(scatter(shard -> productRepository.countByNameLength())),
+				concat(scatter(shard -> productRepository.countByDescriptionLength())), marks);
+
+		log.debug("Product length distributions reconciled");
+	}
+
+	/**
+	 * Method to write all products as JSON straight from the result set. With
+	 * shards they are written one shard after the other, each in id order.
+	 * 
+	 * @param generator JsonGenerator
+	 * 
+	 * @return long written products
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public long writeAll(JsonGenerator generator) throws IOException {
+
+		if (!isSharded())
+			return productJdbcRepository.writeAll(generator);
+
+		long written = 0;
+
+		generator.writeStartArray();
+
+		try {
+
+			for (int shard = 0; shard < shardRouter.getShardCount(); shard++)
+				written += shardRouter.scatter(Collections.singletonList(shard), current -> {
+					try {
+						return productJdbcRepository.writeRows(generator);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}).get(0);
+
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+
+		generator.writeEndArray();
+
+		return written;
+	}
+
+	/**
+	 * Method to write a product as JSON straight from the result set
+	 * 
+	 * @param id        long
+	 * @param generator JsonGenerator
+	 * 
+	 * @return boolean false if the product does not exist
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public boolean writeById(long id, JsonGenerator generator) throws IOException {
+
+		try {
+
+			return onShardOf(id, () -> {
+				try {
+					return productJdbcRepository.writeById(id, generator);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			});
+
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * Method to create a product. With server assigned ids a product without
+	 * id gets a new one and is inserted with no existence check.
 	 * 
 	 * @param productModel ProductModel
 	 * 
@@ -83,15 +516,80 @@ public class ProductServiceImpl implements ProductService {
 	@Override
 	public ProductModel create(ProductModel productModel) {
 
-		if (productRepository.existsById(productModel.getId()))
+		if (productIdGenerator != null && productModel.getId() == 0) {
+
+			productModel.setId(productIdGenerator.nextId());
+			productModel.setVersion(onShardOf(productModel.getId(), () -> insertGenerated(productModel)));
+
+		} else {
+
+			productModel.setVersion(onShardOf(productModel.getId(), () -> {
+
+				if (productRepository.existsById(productModel.getId()))
+					throw new ConflictException(conflictException + productModel.getId());
+
+				return insert(productModel);
+			}));
+
+		}
+
+		if (productIdFilter != null)
+			productIdFilter.add(productModel.getId());
+
+		statistics.created(productModel.getName(), productModel.getDescription());
+
+		return evictWritten(publishCreated(productModel));
+	}
+
+	/**
+	 * A deleted product keeps its row until it is purged, so an insert that
+	 * clashes with a tombstone purges it and is tried once more
+	 */
+	private long insert(ProductModel productModel) {
+
+		try {
+
+			return productRepository.save(ProductMapper.INSTANCE.productModelToProductEntity(productModel))
+					.getVersion();
+
+		} catch (DataIntegrityViolationException ex) {
+
+			if (productRepository.purgeTombstones(Collections.singletonList(productModel.getId())) == 0)
+				throw new ConflictException(conflictException + productModel.getId());
+
+			log.debug("Purged tombstone of product {} to create it again", productModel.getId());
+
+			return productRepository.save(ProductMapper.INSTANCE.productModelToProductEntity(productModel))
+					.getVersion();
+
+		}
+	}
+
+	/**
+	 * A generated id is not stored yet, so a single insert statement is enough
+	 * and the merge of save does not select the row first. It only fails if a
+	 * client chose the same id before.
+	 */
+	private long insertGenerated(ProductModel productModel) {
+
+		try {
+
+			productRepository.insertRow(productModel.getId(), productModel.getName(), productModel.getDescription(),
+					0, null);
+
+			return 0;
+
+		} catch (DataIntegrityViolationException ex) {
+
 			throw new ConflictException(conflictException + productModel.getId());
 
-		return ProductMapper.INSTANCE.productEntityToProductModel(
-				productRepository.save(ProductMapper.INSTANCE.productModelToProductEntity(productModel)));
+		}
 	}
 
 	/**
-	 * Method to update a product
+	 * Method to update a product. When the model carries a version it must match
+	 * the stored one; without a version a concurrent modification is retried
+	 * with jittered backoff against the fresh row.
 	 * 
 	 * @param productModel ProductModel
 	 * 
@@ -99,6 +597,11 @@ public class ProductServiceImpl implements ProductService {
 	 */
 	@Override
 	public ProductModel update(ProductModel productModel) {
+		return evictWritten(publish(retryOnConflict(productModel.getId(), productModel.getVersion() != null,
+				() -> updateOnce(productModel))));
+	}
+
+	private ProductModel updateOnce(ProductModel productModel) {
 
 		Optional<ProductEntity> productEntityData = productRepository.findById(productModel.getId());
 
@@ -106,28 +609,381 @@ public class ProductServiceImpl implements ProductService {
 			throw new NotFoundException(notFoundException + productModel.getId());
 
 		ProductEntity productEntity = productEntityData.get();
+
+		if (productModel.getVersion() != null && productModel.getVersion() != productEntity.getVersion())
+			throw new ConflictException(versionConflictException + productModel.getId());
+
+		String oldName = productEntity.getName();
+		String oldDescription = productEntity.getDescription();
+
 		productEntity.setName(productModel.getName());
 		productEntity.setDescription(productModel.getDescription());
 
-		return ProductMapper.INSTANCE.productEntityToProductModel(productRepository.save(productEntity));
+		productModel.setVersion(productRepository.saveAndFlush(productEntity).getVersion());
+
+		statistics.updated(oldName, oldDescription, productModel.getName(), productModel.getDescription());
 
+		return productModel;
 	}
 
 	/**
-	 * Method to delete a product by id
+	 * Method to apply a JSON merge patch to a product. Only the fields present
+	 * are changed and only changed columns are written; a patch that changes
+	 * nothing issues no UPDATE.
 	 * 
-	 * @param id long
+	 * @param id    long
+	 * @param patch Map<String, Object>
 	 * 
+	 * @return ProductModel
 	 */
 	@Override
-	public void deleteById(long id) {
+	public ProductModel patch(long id, Map<String, Object> patch) {
+		return evictWritten(publish(retryOnConflict(id, patch.get("version") != null, () -> patchOnce(id, patch))));
+	}
+
+	private ProductModel patchOnce(long id, Map<String, Object> patch) {
 
 		Optional<ProductEntity> productEntityData = productRepository.findById(id);
 
 		if (!productEntityData.isPresent())
 			throw new NotFoundException(notFoundException + id);
 
-		productRepository.deleteById(id);
+		ProductEntity productEntity = productEntityData.get();
+		String oldName = productEntity.getName();
+		String oldDescription = productEntity.getDescription();
+		boolean changed = false;
+
+		for (Map.Entry<String, Object> field : patch.entrySet()) {
+
+			switch (field.getKey()) {
+			case "id":
+				if (!(field.getValue() instanceof Number) || ((Number) field.getValue()).longValue() != id)
+					throw new BadRequestException(badRequestException + id + ", id cannot be changed");
+				break;
+			case "version":
+				if (field.getValue() != null && (!(field.getValue() instanceof Number)
+						|| ((Number) field.getValue()).longValue() != productEntity.getVersion()))
+					throw new ConflictException(versionConflictException + id);
+				break;
+			case "name":
+				String name = requiredText(id, field);
+				changed |= !name.equals(productEntity.getName());
+				productEntity.setName(name);
+				break;
+			case "description":
+				String description = requiredText(id, field);
+				changed |= !description.equals(productEntity.getDescription());
+				productEntity.setDescription(description);
+				break;
+			default:
+				throw new BadRequestException(badRequestException + id + ", unknown field " + field.getKey());
+			}
+		}
+
+		if (!changed)
+			return ProductMapper.INSTANCE.productEntityToProductModel(productEntity);
+
+		ProductModel productModel = ProductMapper.INSTANCE
+				.productEntityToProductModel(productRepository.saveAndFlush(productEntity));
+
+		statistics.updated(oldName, oldDescription, productModel.getName(), productModel.getDescription());
+
+		return productModel;
+	}
+
+	private String requiredText(long id, Map.Entry<String, Object> field) {
+
+		if (!(field.getValue() instanceof String))
+			throw new BadRequestException(badRequestException + id + ", " + field.getKey() + " must be a string");
+
+		return (String) field.getValue();
+	}
+
+	/**
+	 * Every attempt runs in its own read-write transaction, so the row is read
+	 * from the primary and the version check happens on the flush inside it
+	 */
+	private ProductModel retryOnConflict(long id, boolean versioned, Supplier<ProductModel> write) {
+
+		for (int attempt = 1;; attempt++) {
+
+			try {
+
+				return onShardOf(id, () -> inWriteTransaction(write));
+
+			} catch (ConflictException ex) {
+
+				evictCached(id);
+				throw ex;
+
+			} catch (OptimisticLockingFailureException ex) {
+
+				evictCached(id);
+
+				if (versioned || attempt >= updateRetryAttempts)
+					throw new ConflictException(versionConflictException + id);
+
+				Deadline.checkCurrent();
+				log.debug("Retrying write of product {} after concurrent modification", id);
+				backoff(attempt);
+			}
+		}
+	}
+
+	private void backoff(int attempt) {
+
+		try {
+
+			Thread.sleep(ThreadLocalRandom.current().nextLong(UPDATE_RETRY_BASE_DELAY_MILLIS << attempt));
+
+		} catch (InterruptedException ex) {
+
+			Thread.currentThread().interrupt();
+			throw new ConflictException(versionConflictException + "interrupted");
+
+		}
+	}
+
+	/**
+	 * Method to delete a product by id
+	 * 
+	 * @param id long
+	 * 
+	 */
+	@Override
+	public void deleteById(long id) {
+
+		ProductEntity productEntity = onShardOf(id, () -> inWriteTransaction(() -> {
+
+			Optional<ProductEntity> productEntityData = productRepository.findById(id);
+
+			if (!productEntityData.isPresent())
+				throw new NotFoundException(notFoundException + id);
+
+			productRepository.deleteById(id);
+
+			return productEntityData.get();
+		}));
+
+		statistics.deleted(productEntity.getName(), productEntity.getDescription());
+
+		evictCached(id);
+
+		publish(current -> current.without(id, productEntity.getVersion()));
+	}
+
+	private <T> T inWriteTransaction(Supplier<T> work) {
+		return transactionTemplate != null ? transactionTemplate.execute(status -> work.get()) : work.get();
+	}
+
+	private boolean isSharded() {
+		return shardRouter != null && shardRouter.getShardCount() > 1;
+	}
+
+	private <T> T onShardOf(long id, Supplier<T> work) {
+		return shardRouter != null ? shardRouter.onShardOf(id, work) : work.get();
+	}
+
+	private <T> List<T> scatter(IntFunction<T> work) {
+		return shardRouter != null ? shardRouter.scatter(work) : Collections.singletonList(work.apply(0));
+	}
+
+	/**
+	 * Without shards the listing keeps its single query, with shards every
+	 * shard is read in parallel in id order and the results are merged by id.
+	 * The snapshot reload reads from the primary so recent writes are in.
+	 */
+	private List<ProductEntity> findAllEntities(boolean primary) {
+
+		if (!isSharded())
+			return primary ? inWriteTransaction(productRepository::findAll) : productRepository.findAll();
+
+		return ShardRouter.merge(shardRouter.scatter(shard -> primary
+				? inWriteTransaction(() -> productRepository.findAll(BY_ID))
+				: productRepository.findAll(BY_ID)), ENTITY_ID_ORDER, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Ids are grouped by shard, each shard is queried in parallel with
+	 * chunked IN queries
+	 */
+	private List<ProductEntity> findAllEntitiesById(List<Long> ids) {
+
+		if (!isSharded())
+			return findChunked(ids);
+
+		Map<Integer, List<Long>> partitions = shardRouter.partition(ids, Long::longValue);
+		List<ProductEntity> result = new ArrayList<>(ids.size());
+
+		for (List<ProductEntity> entities : shardRouter.scatter(partitions.keySet(),
+				shard -> findChunked(partitions.get(shard))))
+			result.addAll(entities);
+
+		return result;
+	}
+
+	private List<ProductEntity> findChunked(List<Long> ids) {
+
+		List<ProductEntity> result = new ArrayList<>(ids.size());
+
+		for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+			Deadline.checkCurrent();
+			result.addAll(
+					productRepository.findAllById(ids.subList(from, Math.min(ids.size(), from + LOOKUP_CHUNK_SIZE))));
+		}
+
+		return result;
+	}
+
+	private static long sum(List<Long> counts) {
+
+		long sum = 0;
+
+		for (Long count : counts)
+			sum += count;
+
+		return sum;
+	}
+
+	private static <T> List<T> concat(List<List<T>> lists) {
+
+		List<T> result = new ArrayList<>();
+
+		for (List<T> list : lists)
+			result.addAll(list);
+
+		return result;
+	}
+
+	private ProductModel publish(ProductModel productModel) {
+
+		ProductModel published = productModel.toBuilder().build();
+		publish(current -> current.with(published));
+
+		return productModel;
+	}
+
+	/**
+	 * A created product replaces the tombstone of an earlier delete
+	 */
+	private ProductModel publishCreated(ProductModel productModel) {
+
+		ProductModel published = productModel.toBuilder().build();
+		publish(current -> current.created(published));
+
+		return productModel;
+	}
+
+	private void publish(UnaryOperator<ProductSnapshot> write) {
+
+		if (!snapshotEnabled)
+			return;
+
+		synchronized (snapshotLock) {
+			snapshotWrites.incrementAndGet();
+			snapshot.updateAndGet(current -> current != null ? write.apply(current) : null);
+		}
+	}
+
+	/**
+	 * Cached models are never handed out, callers get their own copy
+	 */
+	private ProductModel getCached(long id) {
+
+		if (productCache == null)
+			return null;
+
+		ProductModel cached = productCache.get(id, ProductModel.class);
+
+		return cached != null ? cached.toBuilder().build() : null;
+	}
+
+	/**
+	 * Ids rejected by the filter or recently found missing are answered without
+	 * a query
+	 */
+	private boolean isKnownMissing(long id) {
+
+		if (productIdFilter != null && !productIdFilter.mightContain(id))
+			return true;
+
+		if (missingProductCache == null || missingProductCache.get(id) == null)
+			return false;
+
+		if (productIdFilter != null)
+			productIdFilter.recordNegativeCacheHit();
+
+		return true;
+	}
+
+	/**
+	 * A lookup that reached the database passed the filter, so finding nothing
+	 * is a false positive of the filter. A write since the lookup started may
+	 * have created the product, then the miss is not kept.
+	 */
+	private void putMissing(long id, long writes) {
+
+		if (productIdFilter != null)
+			productIdFilter.recordFalsePositive();
+
+		if (missingProductCache == null)
+			return;
+
+		missingProductCache.put(id, Boolean.TRUE);
+
+		if (cacheWrites(id) != writes)
+			missingProductCache.evict(id);
+	}
+
+	/**
+	 * Only reads fill the cache. A write since the row was loaded, a delete
+	 * among them, may have evicted the product before this put, then the
+	 * stale model is evicted again.
+	 */
+	private ProductModel putCachedIfAbsent(ProductModel productModel, long writes) {
+
+		if (productCache == null)
+			return productModel;
+
+		Cache.ValueWrapper cached = productCache.putIfAbsent(productModel.getId(), productModel.toBuilder().build());
+
+		if (cacheWrites(productModel.getId()) != writes) {
+			productCache.evict(productModel.getId());
+			return productModel;
+		}
+
+		return cached != null && cached.get() != null ? ((ProductModel) cached.get()).toBuilder().build()
+				: productModel;
+	}
+
+	private ProductModel evictWritten(ProductModel productModel) {
+
+		evictCached(productModel.getId());
+
+		return productModel;
+	}
+
+	/**
+	 * Writes evict instead of putting, a put from a write that committed
+	 * before another could land after it
+	 */
+	private void evictCached(long id) {
+
+		cacheWrites.incrementAndGet(stripe(id));
+
+		if (productCache != null)
+			productCache.evict(id);
+
+		if (missingProductCache != null)
+			missingProductCache.evict(id);
+	}
+
+	private long cacheWrites(long id) {
+		return cacheWrites.get(stripe(id));
+	}
+
+	private static int stripe(long id) {
+		return Long.hashCode(id) & (CACHE_WRITE_STRIPES - 1);
 	}
 
 }
@@ -0,0 +1,267 @@
+package com.sprinter.service.impl;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.sprinter.model.ProductModel;
+import com.sprinter.persistence.entity.ProductEntity;
+
+/**
+ * Immutable view of the catalogue kept as ids sorted in a primitive array
+ * with the other columns in parallel arrays. Lookups are a binary search and
+ * never lock; a write builds a new snapshot and never modifies the current
+ * one, so readers holding the old reference are never affected. Deleted
+ * products leave a tombstone with their version until the next full load,
+ * so a write published after the delete cannot bring them back.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public final class ProductSnapshot {
+
+	private final long[] ids;
+	private final String[] names;
+	private final String[] descriptions;
+	private final long[] versions;
+	private final long[] deletedIds;
+	private final long[] deletedVersions;
+
+	private ProductSnapshot(long[] ids, String[] names, String[] descriptions, long[] versions, long[] deletedIds,
+			long[] deletedVersions) {
+		this.ids = ids;
+		this.names = names;
+		this.descriptions = descriptions;
+		this.versions = versions;
+		this.deletedIds = deletedIds;
+		this.deletedVersions = deletedVersions;
+	}
+
+	/**
+	 * Method to build a snapshot from the stored products
+	 *
+	 * @param productEntities List<ProductEntity>
+	 *
+	 * @return ProductSnapshot
+	 */
+	public static ProductSnapshot of(List<ProductEntity> productEntities) {
+
+		List<ProductEntity> sorted = new ArrayList<>(productEntities);
+		sorted.sort(Comparator.comparingLong(ProductEntity::getId));
+
+		int size = sorted.size();
+		long[] ids = new long[size];
+		String[] names = new String[size];
+		String[] descriptions = new String[size];
+		long[] versions = new long[size];
+
+		for (int i = 0; i < size; i++) {
+			ProductEntity productEntity = sorted.get(i);
+			ids[i] = productEntity.getId();
+			names[i] = productEntity.getName();
+			descriptions[i] = productEntity.getDescription();
+			versions[i] = productEntity.getVersion();
+		}
+
+		return new ProductSnapshot(ids, names, descriptions, versions, new long[0], new long[0]);
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Method to find a product by id
+	 *
+	 * @param id long
+	 *
+	 * @return ProductModel or null when the id is not in the snapshot
+	 */
+	public ProductModel find(long id) {
+
+		int index = Arrays.binarySearch(ids, id);
+
+		return index >= 0 ? model(index) : null;
+	}
+
+	/**
+	 * Method to list all products ordered by id
+	 *
+	 * @return List<ProductModel>
+	 */
+	public List<ProductModel> findAll() {
+
+		List<ProductModel> products = new ArrayList<>(ids.length);
+
+		for (int i = 0; i < ids.length; i++)
+			products.add(model(i));
+
+		return products;
+	}
+
+	/**
+	 * Method to list the products after an id ordered by id
+	 *
+	 * @param afterId long
+	 * @param limit   int
+	 *
+	 * @return List<ProductModel>
+	 */
+	public List<ProductModel> findPage(long afterId, int limit) {
+
+		int index = Arrays.binarySearch(ids, afterId);
+		int from = index >= 0 ? index + 1 : -index - 1;
+		int to = (int) Math.min(ids.length, (long) from + limit);
+
+		List<ProductModel> products = new ArrayList<>(Math.max(0, to - from));
+
+		for (int i = from; i < to; i++)
+			products.add(model(i));
+
+		return products;
+	}
+
+	/**
+	 * Method to get a snapshot with a created product, a product created again
+	 * after its delete replaces the tombstone
+	 *
+	 * @param productModel ProductModel
+	 *
+	 * @return ProductSnapshot
+	 */
+	public ProductSnapshot created(ProductModel productModel) {
+
+		int deleted = Arrays.binarySearch(deletedIds, productModel.getId());
+
+		if (deleted < 0)
+			return with(productModel);
+
+		int size = deletedIds.length - 1;
+
+		return new ProductSnapshot(ids, names, descriptions, versions, remove(deletedIds, new long[size], deleted),
+				remove(deletedVersions, new long[size], deleted)).with(productModel);
+	}
+
+	/**
+	 * Method to get a snapshot with the product added or replaced. A product
+	 * older than the one already held, or not newer than its tombstone, is
+	 * ignored, so writers publishing out of order cannot roll a product back
+	 * or bring a deleted one back.
+	 *
+	 * @param productModel ProductModel
+	 *
+	 * @return ProductSnapshot
+	 */
+	public ProductSnapshot with(ProductModel productModel) {
+
+		long version = productModel.getVersion() != null ? productModel.getVersion() : 0;
+		int deleted = Arrays.binarySearch(deletedIds, productModel.getId());
+
+		if (deleted >= 0 && deletedVersions[deleted] >= version)
+			return this;
+
+		int index = Arrays.binarySearch(ids, productModel.getId());
+
+		if (index >= 0) {
+
+			if (versions[index] > version)
+				return this;
+
+			String[] newNames = names.clone();
+			String[] newDescriptions = descriptions.clone();
+			long[] newVersions = versions.clone();
+
+			newNames[index] = productModel.getName();
+			newDescriptions[index] = productModel.getDescription();
+			newVersions[index] = version;
+
+			return new ProductSnapshot(ids, newNames, newDescriptions, newVersions, deletedIds, deletedVersions);
+		}
+
+		int at = -index - 1;
+		int size = ids.length + 1;
+
+		long[] newIds = insert(ids, new long[size], at);
+		String[] newNames = insert(names, new String[size], at);
+		String[] newDescriptions = insert(descriptions, new String[size], at);
+		long[] newVersions = insert(versions, new long[size], at);
+
+		newIds[at] = productModel.getId();
+		newNames[at] = productModel.getName();
+		newDescriptions[at] = productModel.getDescription();
+		newVersions[at] = version;
+
+		return new ProductSnapshot(newIds, newNames, newDescriptions, newVersions, deletedIds, deletedVersions);
+	}
+
+	/**
+	 * Method to get a snapshot without the product and with its tombstone
+	 *
+	 * @param id      long
+	 * @param version long version of the deleted product
+	 *
+	 * @return ProductSnapshot
+	 */
+	public ProductSnapshot without(long id, long version) {
+
+		long[] newDeletedIds = deletedIds;
+		long[] newDeletedVersions = deletedVersions;
+		int deleted = Arrays.binarySearch(deletedIds, id);
+
+		if (deleted >= 0) {
+
+			newDeletedVersions = deletedVersions.clone();
+			newDeletedVersions[deleted] = Math.max(version, deletedVersions[deleted]);
+
+		} else {
+
+			int at = -deleted - 1;
+			int size = deletedIds.length + 1;
+
+			newDeletedIds = insert(deletedIds, new long[size], at);
+			newDeletedVersions = insert(deletedVersions, new long[size], at);
+			newDeletedIds[at] = id;
+			newDeletedVersions[at] = version;
+
+		}
+
+		int index = Arrays.binarySearch(ids, id);
+
+		if (index < 0)
+			return new ProductSnapshot(ids, names, descriptions, versions, newDeletedIds, newDeletedVersions);
+
+		int size = ids.length - 1;
+
+		return new ProductSnapshot(remove(ids, new long[size], index), remove(names, new String[size], index),
+				remove(descriptions, new String[size], index), remove(versions, new long[size], index),
+				newDeletedIds, newDeletedVersions);
+	}
+
+	private ProductModel model(int index) {
+		return ProductModel.builder().id(ids[index]).name(names[index]).description(descriptions[index])
+				.version(versions[index]).build();
+	}
+
+	private static <T> T insert(T source, T target, int at) {
+
+		int length = Array.getLength(source);
+
+		System.arraycopy(source, 0, target, 0, at);
+		System.arraycopy(source, at, target, at + 1, length - at);
+
+		return target;
+	}
+
+	private static <T> T remove(T source, T target, int at) {
+
+		int length = Array.getLength(source);
+
+		System.arraycopy(source, 0, target, 0, at);
+		System.arraycopy(source, at + 1, target, at, length - at - 1);
+
+		return target;
+	}
+
+}
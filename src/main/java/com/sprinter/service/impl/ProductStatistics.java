@@ -0,0 +1,231 @@
+package com.sprinter.service.impl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sprinter.model.ProductStatsModel;
+
+/**
+ * Product counters maintained by the service write paths with striped
+ * adders, so reading them is O(1) and never touches the table. The total and
+ * the length distributions are reset to the stored values on their own
+ * reconciliations, which also corrects writes made outside the service such
+ * as imports. The deltas are marked before the stored values are queried and
+ * only the marked part is dropped, so writes made while the queries run are
+ * kept.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+class ProductStatistics {
+
+	static final int[] LENGTH_BOUNDS = { 16, 32, 64, 128 };
+	static final String[] LENGTH_LABELS = { "0-16", "17-32", "33-64", "65-128", "129+" };
+	static final int RECENT_SECONDS = 60;
+
+	private final AtomicLong reconciledTotal = new AtomicLong();
+	private final LongAdder totalDelta = new LongAdder();
+
+	private final LongAdder created = new LongAdder();
+	private final LongAdder updated = new LongAdder();
+	private final LongAdder deleted = new LongAdder();
+
+	private final RecentCounter createdRecently = new RecentCounter();
+	private final RecentCounter updatedRecently = new RecentCounter();
+
+	private final LengthHistogram nameLengths = new LengthHistogram();
+	private final LengthHistogram descriptionLengths = new LengthHistogram();
+
+	private volatile long reconciledAt;
+
+	void created(String name, String description) {
+
+		totalDelta.increment();
+		created.increment();
+		createdRecently.increment(System.currentTimeMillis());
+
+		nameLengths.add(name, 1);
+		descriptionLengths.add(description, 1);
+	}
+
+	void updated(String oldName, String oldDescription, String name, String description) {
+
+		updated.increment();
+		updatedRecently.increment(System.currentTimeMillis());
+
+		nameLengths.add(oldName, -1);
+		nameLengths.add(name, 1);
+		descriptionLengths.add(oldDescription, -1);
+		descriptionLengths.add(description, 1);
+	}
+
+	void deleted(String name, String description) {
+
+		totalDelta.decrement();
+		deleted.increment();
+
+		nameLengths.add(name, -1);
+		descriptionLengths.add(description, -1);
+	}
+
+	/**
+	 * Method to take the total delta before the stored count is queried
+	 *
+	 * @return long
+	 */
+	long markTotal() {
+		return totalDelta.sum();
+	}
+
+	/**
+	 * Method to reset the total to the stored count. Only the delta taken
+	 * before the query is dropped, writes made since stay counted.
+	 *
+	 * @param total long
+	 * @param mark  long from markTotal
+	 */
+	void reconcileTotal(long total, long mark) {
+
+		totalDelta.add(-mark);
+		reconciledTotal.set(total);
+
+		reconciledAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Method to take the length deltas before the stored distributions are
+	 * queried
+	 *
+	 * @return long[][] name and description deltas
+	 */
+	long[][] markLengths() {
+		return new long[][] { nameLengths.mark(), descriptionLengths.mark() };
+	}
+
+	/**
+	 * Method to reset the length distributions to the stored ones
+	 *
+	 * @param nameCounts        List<Object[]> length and count pairs
+	 * @param descriptionCounts List<Object[]> length and count pairs
+	 * @param marks             long[][] from markLengths
+	 */
+	void reconcileLengths(List<Object[]> nameCounts, List<Object[]> descriptionCounts, long[][] marks) {
+		nameLengths.reconcile(nameCounts, marks[0]);
+		descriptionLengths.reconcile(descriptionCounts, marks[1]);
+	}
+
+	ProductStatsModel toModel() {
+
+		long now = System.currentTimeMillis();
+
+		return ProductStatsModel.builder().total(reconciledTotal.get() + totalDelta.sum()).created(created.sum())
+				.updated(updated.sum()).deleted(deleted.sum()).createdLastMinute(createdRecently.sum(now))
+				.updatedLastMinute(updatedRecently.sum(now)).nameLengths(nameLengths.toMap())
+				.descriptionLengths(descriptionLengths.toMap()).reconciledAt(reconciledAt).build();
+	}
+
+	static int bucket(long length) {
+
+		for (int i = 0; i < LENGTH_BOUNDS.length; i++) {
+			if (length <= LENGTH_BOUNDS[i])
+				return i;
+		}
+
+		return LENGTH_BOUNDS.length;
+	}
+
+	/**
+	 * Events of the last minute kept in one adder per second, a slot is reset
+	 * the first time it is reused
+	 */
+	private static class RecentCounter {
+
+		private final LongAdder[] counts = new LongAdder[RECENT_SECONDS];
+		private final AtomicLongArray seconds = new AtomicLongArray(RECENT_SECONDS);
+
+		RecentCounter() {
+			for (int i = 0; i < RECENT_SECONDS; i++)
+				counts[i] = new LongAdder();
+		}
+
+		void increment(long nowMillis) {
+
+			long second = nowMillis / 1000;
+			int slot = (int) (second % RECENT_SECONDS);
+			long stamp = seconds.get(slot);
+
+			if (stamp != second && seconds.compareAndSet(slot, stamp, second))
+				counts[slot].reset();
+
+			counts[slot].increment();
+		}
+
+		long sum(long nowMillis) {
+
+			long second = nowMillis / 1000;
+			long sum = 0;
+
+			for (int i = 0; i < RECENT_SECONDS; i++) {
+				if (second - seconds.get(i) < RECENT_SECONDS)
+					sum += counts[i].sum();
+			}
+
+			return sum;
+		}
+
+	}
+
+	private static class LengthHistogram {
+
+		private final AtomicLongArray reconciled = new AtomicLongArray(LENGTH_LABELS.length);
+		private final LongAdder[] deltas = new LongAdder[LENGTH_LABELS.length];
+
+		LengthHistogram() {
+			for (int i = 0; i < deltas.length; i++)
+				deltas[i] = new LongAdder();
+		}
+
+		void add(String value, long count) {
+			deltas[bucket(value != null ? value.length() : 0)].add(count);
+		}
+
+		long[] mark() {
+
+			long[] mark = new long[deltas.length];
+
+			for (int i = 0; i < deltas.length; i++)
+				mark[i] = deltas[i].sum();
+
+			return mark;
+		}
+
+		void reconcile(List<Object[]> counts, long[] mark) {
+
+			long[] buckets = new long[LENGTH_LABELS.length];
+
+			for (Object[] row : counts)
+				buckets[bucket(row[0] != null ? ((Number) row[0]).longValue() : 0)] += ((Number) row[1]).longValue();
+
+			for (int i = 0; i < buckets.length; i++) {
+				deltas[i].add(-mark[i]);
+				reconciled.set(i, buckets[i]);
+			}
+		}
+
+		Map<String, Long> toMap() {
+
+			Map<String, Long> map = new LinkedHashMap<>();
+
+			for (int i = 0; i < LENGTH_LABELS.length; i++)
+				map.put(LENGTH_LABELS[i], reconciled.get(i) + deltas[i].sum());
+
+			return map;
+		}
+
+	}
+
+}
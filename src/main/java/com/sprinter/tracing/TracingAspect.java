@@ -0,0 +1,81 @@
+package com.sprinter.tracing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+import com.sprinter.model.ProductModel;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Opens a span for every endpoint of the product controller and every method
+ * of the product service. A span that is not sampled is a no-op. Scheduled
+ * service methods are left out, they would start a root trace on every run.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Aspect
+public class TracingAspect {
+
+	private final Tracer tracer;
+
+	public TracingAspect(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Around("(execution(public * com.sprinter.controller.ProductApiController.*(..))"
+			+ " || execution(public * com.sprinter.service.impl.ProductServiceImpl.*(..)))"
+			+ " && !@annotation(org.springframework.scheduling.annotation.Scheduled)")
+	public Object span(ProceedingJoinPoint joinPoint) throws Throwable {
+
+		Span span = tracer
+				.spanBuilder(joinPoint.getSignature().getDeclaringType().getSimpleName() + "."
+						+ joinPoint.getSignature().getName())
+				.setAttribute("code.namespace", joinPoint.getSignature().getDeclaringTypeName())
+				.setAttribute("code.function", joinPoint.getSignature().getName()).startSpan();
+
+		if (span.isRecording()) {
+
+			Long productId = productId(joinPoint.getArgs());
+
+			if (productId != null)
+				span.setAttribute("product.id", productId);
+		}
+
+		try (Scope scope = span.makeCurrent()) {
+
+			return joinPoint.proceed();
+
+		} catch (Throwable ex) {
+
+			span.recordException(ex);
+			span.setStatus(StatusCode.ERROR);
+			throw ex;
+
+		} finally {
+
+			span.end();
+
+		}
+	}
+
+	private static Long productId(Object[] args) {
+
+		if (args.length == 0)
+			return null;
+
+		if (args[0] instanceof Long)
+			return (Long) args[0];
+
+		if (args[0] instanceof ProductModel)
+			return ((ProductModel) args[0]).getId();
+
+		return null;
+	}
+
+}
@@ -0,0 +1,163 @@
+package com.sprinter.tracing;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import org.springframework.cache.Cache;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Cache decorator that opens a span for every lookup and write made within
+ * a trace. A lookup that loads the value holds the spans of the loading.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class TracingCache implements Cache {
+
+	private final Cache delegate;
+	private final Tracer tracer;
+
+	public TracingCache(Cache delegate, Tracer tracer) {
+		this.delegate = delegate;
+		this.tracer = tracer;
+	}
+
+	@Override
+	public String getName() {
+		return delegate.getName();
+	}
+
+	@Override
+	public Object getNativeCache() {
+		return delegate.getNativeCache();
+	}
+
+	@Override
+	public ValueWrapper get(Object key) {
+		return lookup(() -> delegate.get(key));
+	}
+
+	@Override
+	public <T> T get(Object key, Class<T> type) {
+		return lookup(() -> delegate.get(key, type));
+	}
+
+	@Override
+	public <T> T get(Object key, Callable<T> valueLoader) {
+
+		Span span = start("get");
+
+		if (!span.isRecording())
+			return delegate.get(key, valueLoader);
+
+		boolean[] loaded = new boolean[1];
+
+		try (Scope scope = span.makeCurrent()) {
+
+			T value = delegate.get(key, () -> {
+				loaded[0] = true;
+				return valueLoader.call();
+			});
+			span.setAttribute("cache.hit", !loaded[0]);
+
+			return value;
+
+		} finally {
+
+			span.end();
+
+		}
+	}
+
+	@Override
+	public void put(Object key, Object value) {
+		write("put", () -> delegate.put(key, value));
+	}
+
+	@Override
+	public ValueWrapper putIfAbsent(Object key, Object value) {
+
+		Span span = start("put");
+
+		try {
+
+			return delegate.putIfAbsent(key, value);
+
+		} finally {
+
+			span.end();
+
+		}
+	}
+
+	@Override
+	public void evict(Object key) {
+		write("evict", () -> delegate.evict(key));
+	}
+
+	@Override
+	public boolean evictIfPresent(Object key) {
+		return delegate.evictIfPresent(key);
+	}
+
+	@Override
+	public void clear() {
+		write("clear", delegate::clear);
+	}
+
+	@Override
+	public boolean invalidate() {
+		return delegate.invalidate();
+	}
+
+	private <T> T lookup(Supplier<T> lookup) {
+
+		Span span = start("get");
+
+		try {
+
+			T value = lookup.get();
+			span.setAttribute("cache.hit", value != null);
+
+			return value;
+
+		} finally {
+
+			span.end();
+
+		}
+	}
+
+	private void write(String operation, Runnable write) {
+
+		Span span = start(operation);
+
+		try {
+
+			write.run();
+
+		} finally {
+
+			span.end();
+
+		}
+	}
+
+	/**
+	 * Outside a trace no root span is started for the cache alone
+	 */
+	private Span start(String operation) {
+
+		if (!Span.current().getSpanContext().isValid())
+			return Span.getInvalid();
+
+		return tracer.spanBuilder("cache " + operation + " " + delegate.getName())
+				.setAttribute("cache.name", delegate.getName()).setAttribute("cache.operation", operation)
+				.startSpan();
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.sprinter.tracing;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import io.opentelemetry.api.trace.Tracer;
+
+/**
+ * Hands out the caches of the delegate wrapped in a TracingCache
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class TracingCacheManager implements CacheManager {
+
+	private final CacheManager delegate;
+	private final Tracer tracer;
+	private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+	public TracingCacheManager(CacheManager delegate, Tracer tracer) {
+		this.delegate = delegate;
+		this.tracer = tracer;
+	}
+
+	@Override
+	public Cache getCache(String name) {
+
+		Cache cache = caches.get(name);
+
+		if (cache != null)
+			return cache;
+
+		Cache delegateCache = delegate.getCache(name);
+
+		return delegateCache != null ? caches.computeIfAbsent(name, key -> new TracingCache(delegateCache, tracer))
+				: null;
+	}
+
+	@Override
+	public Collection<String> getCacheNames() {
+		return delegate.getCacheNames();
+	}
+
+}
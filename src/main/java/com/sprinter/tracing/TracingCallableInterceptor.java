@@ -0,0 +1,51 @@
+package com.sprinter.tracing;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Carries the trace of a request over to the thread writing its streamed
+ * response
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class TracingCallableInterceptor implements CallableProcessingInterceptor {
+
+	static final String CONTEXT_ATTRIBUTE = TracingCallableInterceptor.class.getName() + ".context";
+
+	private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+	@Override
+	public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) throws Exception {
+		request.setAttribute(CONTEXT_ATTRIBUTE, Context.current(), RequestAttributes.SCOPE_REQUEST);
+	}
+
+	@Override
+	public <T> void preProcess(NativeWebRequest request, Callable<T> task) throws Exception {
+
+		Context context = (Context) request.getAttribute(CONTEXT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+
+		if (context != null)
+			SCOPE.set(context.makeCurrent());
+	}
+
+	@Override
+	public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult)
+			throws Exception {
+
+		Scope scope = SCOPE.get();
+
+		if (scope != null) {
+			SCOPE.remove();
+			scope.close();
+		}
+	}
+
+}
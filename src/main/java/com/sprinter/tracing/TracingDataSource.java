@@ -0,0 +1,185 @@
+package com.sprinter.tracing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+
+/**
+ * Opens a client span for every statement executed within a trace, named
+ * after the SQL operation and holding the statement text. Reading the rows
+ * of a query is not part of its span.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class TracingDataSource extends DelegatingDataSource {
+
+	static final int MAX_STATEMENT_LENGTH = 1000;
+
+	private final Tracer tracer;
+	private final String system;
+
+	public TracingDataSource(DataSource targetDataSource, Tracer tracer, String system) {
+		super(targetDataSource);
+		this.tracer = tracer;
+		this.system = system;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return connection(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return connection(super.getConnection(username, password));
+	}
+
+	private Connection connection(Connection target) {
+		return (Connection) Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new ConnectionHandler(target));
+	}
+
+	/**
+	 * Method to get the operation of a statement, its first keyword
+	 *
+	 * @param sql String
+	 *
+	 * @return String
+	 */
+	static String operation(String sql) {
+
+		if (sql == null)
+			return "SQL";
+
+		String trimmed = sql.trim();
+		int end = 0;
+
+		while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end)))
+			end++;
+
+		return end > 0 ? trimmed.substring(0, end).toUpperCase() : "SQL";
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+		try {
+
+			return method.invoke(target, args);
+
+		} catch (InvocationTargetException ex) {
+
+			throw ex.getTargetException();
+
+		}
+	}
+
+	private class ConnectionHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "unwrap":
+				return ((Class<?>) args[0]).isInstance(proxy) ? proxy : target.unwrap((Class<?>) args[0]);
+			case "isWrapperFor":
+				return ((Class<?>) args[0]).isInstance(proxy) || target.isWrapperFor((Class<?>) args[0]);
+			default:
+				break;
+			}
+
+			Object result = TracingDataSource.invoke(target, method, args);
+
+			if (!(result instanceof Statement))
+				return result;
+
+			String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+			Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+					: result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+
+			return Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(), new Class<?>[] { type },
+					new StatementHandler((Statement) result, sql));
+		}
+
+	}
+
+	private class StatementHandler implements InvocationHandler {
+
+		private final Statement target;
+		private final String sql;
+
+		StatementHandler(Statement target, String sql) {
+			this.target = target;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			switch (method.getName()) {
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				break;
+			}
+
+			if (!method.getName().startsWith("execute") || !Span.current().getSpanContext().isValid())
+				return TracingDataSource.invoke(target, method, args);
+
+			String statement = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+			Span span = tracer.spanBuilder(operation(statement)).setSpanKind(SpanKind.CLIENT)
+					.setAttribute("db.system", system).setAttribute("db.operation", operation(statement))
+					.startSpan();
+
+			if (span.isRecording() && statement != null)
+				span.setAttribute("db.statement", statement.length() > MAX_STATEMENT_LENGTH
+						? statement.substring(0, MAX_STATEMENT_LENGTH) : statement);
+
+			try (Scope scope = span.makeCurrent()) {
+
+				return TracingDataSource.invoke(target, method, args);
+
+			} catch (Throwable ex) {
+
+				span.recordException(ex);
+				span.setStatus(StatusCode.ERROR);
+				throw ex;
+
+			} finally {
+
+				span.end();
+
+			}
+		}
+
+	}
+
+}
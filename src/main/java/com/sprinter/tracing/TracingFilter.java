@@ -0,0 +1,149 @@
+package com.sprinter.tracing;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+
+/**
+ * Opens the server span of every request, continuing the trace of the caller
+ * when it sends a W3C traceparent header. The span lasts until the response
+ * is written, so the time between it and the controller span is the
+ * serialization of the response. A streamed response ends the span when the
+ * stream completes.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TracingFilter extends OncePerRequestFilter {
+
+	private static final TextMapGetter<HttpServletRequest> HEADERS = new TextMapGetter<HttpServletRequest>() {
+
+		@Override
+		public Iterable<String> keys(HttpServletRequest request) {
+			return Collections.list(request.getHeaderNames());
+		}
+
+		@Override
+		public String get(HttpServletRequest request, String name) {
+			return request != null ? request.getHeader(name) : null;
+		}
+
+	};
+
+	private final Tracer tracer;
+	private final TextMapPropagator propagator;
+
+	public TracingFilter(OpenTelemetry openTelemetry, Tracer tracer) {
+		this.tracer = tracer;
+		this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		Context parent = propagator.extract(Context.root(), request, HEADERS);
+		Span span = tracer.spanBuilder(request.getMethod()).setParent(parent).setSpanKind(SpanKind.SERVER)
+				.setAttribute("http.request.method", request.getMethod())
+				.setAttribute("url.path", request.getRequestURI()).startSpan();
+
+		boolean async = false;
+
+		try (Scope scope = span.makeCurrent()) {
+
+			filterChain.doFilter(request, response);
+
+			if (request.isAsyncStarted()) {
+				async = true;
+				request.getAsyncContext().addListener(new SpanEnd(span, request, response));
+			}
+
+		} catch (IOException | ServletException | RuntimeException ex) {
+
+			span.recordException(ex);
+			span.setStatus(StatusCode.ERROR);
+			throw ex;
+
+		} finally {
+
+			if (!async)
+				end(span, request, response);
+		}
+	}
+
+	private static void end(Span span, HttpServletRequest request, HttpServletResponse response) {
+
+		Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+
+		if (route != null) {
+			span.updateName(request.getMethod() + " " + route);
+			span.setAttribute("http.route", route.toString());
+		}
+
+		span.setAttribute("http.response.status_code", response.getStatus());
+
+		if (response.getStatus() >= 500)
+			span.setStatus(StatusCode.ERROR);
+
+		span.end();
+	}
+
+	private static class SpanEnd implements AsyncListener {
+
+		private final Span span;
+		private final HttpServletRequest request;
+		private final HttpServletResponse response;
+
+		SpanEnd(Span span, HttpServletRequest request, HttpServletResponse response) {
+			this.span = span;
+			this.request = request;
+			this.response = response;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			end(span, request, response);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			span.setStatus(StatusCode.ERROR, "timeout");
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			if (event.getThrowable() != null)
+				span.recordException(event.getThrowable());
+			span.setStatus(StatusCode.ERROR);
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			event.getAsyncContext().addListener(this);
+		}
+
+	}
+
+}
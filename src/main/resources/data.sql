@@ -1,4 +1,4 @@
-insert into Product (id, name, description) values (1, 'T-shirt', 'Blue t-shirt');
-insert into Product (id, name, description) values (2, 'Shorts', 'Black trouser');
-insert into Product (id, name, description) values (3, 'Running shoes', 'Black running shoes');
-insert into Product (id, name, description) values (4, 'Trainers', 'Green trainers');
+insert into Product (id, name, description, version) values (1, 'T-shirt', 'Blue t-shirt', 0);
+insert into Product (id, name, description, version) values (2, 'Shorts', 'Black trouser', 0);
+insert into Product (id, name, description, version) values (3, 'Running shoes', 'Black running shoes', 0);
+insert into Product (id, name, description, version) values (4, 'Trainers', 'Green trainers', 0);
@@ -0,0 +1,53 @@
+package com.sprinter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class DataSourceConfigTest {
+
+	/**
+	 * Test the primary pool takes the spring.datasource.hikari settings and
+	 * is closed with the context
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_primary_pool() throws Exception {
+
+		AtomicReference<HikariDataSource> primary = new AtomicReference<>();
+
+		new ApplicationContextRunner().withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+				.withUserConfiguration(DataSourceConfig.class)
+				.withPropertyValues("spring.datasource.url=jdbc:h2:mem:pool-config",
+						"spring.datasource.hikari.maximum-pool-size=3",
+						"spring.datasource.hikari.connection-timeout=1234")
+				.run(context -> {
+
+					primary.set(context.getBean("primaryDataSource", HikariDataSource.class));
+
+					assertEquals("primary", primary.get().getPoolName());
+					assertEquals(3, primary.get().getMaximumPoolSize());
+					assertEquals(1234, primary.get().getConnectionTimeout());
+					assertFalse(primary.get().isClosed());
+				});
+
+		assertTrue(primary.get().isClosed());
+
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.sprinter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.limiter.AdmissionControlInterceptor;
+import com.sprinter.persistence.entity.ProductEntity;
+import com.sprinter.persistence.repository.ProductRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Runs the purger on tombstones written on both sides of the retention,
+ * with the API busy and then quiet
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:purge", "sprinter.purge.interval-ms=3600000" })
+public class ProductTombstonePurgerTest {
+
+	static final long retentionMillis = 60_000;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private ShardRouter shardRouter;
+
+	/**
+	 * Test only the tombstones older than the retention are removed, nothing
+	 * is purged while the API is busy, and the meters match the rows
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_purge() throws Exception {
+
+		long now = System.currentTimeMillis();
+
+		productRepository.insertRow(901, "Cap", "Red cap", 1, new Timestamp(now - 2 * retentionMillis));
+		productRepository.insertRow(902, "Cap", "Blue cap", 1, new Timestamp(now - 3 * retentionMillis));
+		productRepository.insertRow(903, "Cap", "Green cap", 1, new Timestamp(now));
+		productRepository.insertRow(904, "Cap", "White cap", 0, null);
+
+		AdmissionControlInterceptor admissionControlInterceptor = mock(AdmissionControlInterceptor.class);
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ProductTombstonePurger purger = new ProductTombstonePurger(productRepository, shardRouter,
+				admissionControlInterceptor, meterRegistry, retentionMillis, 1, 20, 5);
+
+		when(admissionControlInterceptor.getInFlight()).thenReturn(10);
+		purger.purge();
+
+		assertEquals(Arrays.asList(901L, 902L, 903L, 904L), storedIds());
+		assertEquals(0, meterRegistry.get("sprinter.purge.purged").counter().count());
+		assertEquals(0, meterRegistry.get("sprinter.purge.pending").gauge().value());
+
+		when(admissionControlInterceptor.getInFlight()).thenReturn(0);
+		purger.purge();
+
+		assertEquals(Arrays.asList(903L, 904L), storedIds());
+		assertEquals(2, meterRegistry.get("sprinter.purge.purged").counter().count());
+		assertEquals(1, meterRegistry.get("sprinter.purge.pending").gauge().value());
+		assertTrue(meterRegistry.get("sprinter.purge.lag").gauge().value() < retentionMillis / 1000);
+	}
+
+	private List<Long> storedIds() {
+		return productRepository.findRowsById(Arrays.asList(901L, 902L, 903L, 904L)).stream()
+				.map(ProductEntity::getId).sorted().collect(Collectors.toList());
+	}
+
+}
@@ -3,16 +3,21 @@ package com.sprinter.controller;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -25,11 +30,17 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sprinter.SprinterApplication;
+import com.sprinter.deadline.DeadlineInterceptor;
+import com.sprinter.exception.BadRequestException;
 import com.sprinter.exception.ConflictException;
+import com.sprinter.exception.DeadlineExceededException;
 import com.sprinter.exception.NotFoundException;
+import com.sprinter.model.ProductLookupModel;
 import com.sprinter.model.ProductModel;
+import com.sprinter.model.ProductStatsModel;
 import com.sprinter.service.ProductService;
 
 /**
@@ -105,6 +116,92 @@ public class ProductApiControllerTest {
 
 	}
 
+	/**
+	 * Test findAll past its deadline
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_findAll_deadline_exceeded() throws Exception {
+
+		when(productService.findAll()).thenThrow(new DeadlineExceededException("Request deadline exceeded"));
+
+		ResultActions response = mvc.perform(get(contextPath).header(DeadlineInterceptor.TIMEOUT_HEADER, "100"));
+		response.andExpect(status().isGatewayTimeout());
+
+	}
+
+	/**
+	 * Test findAllById OK
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_findAllById_OK() throws Exception {
+
+		when(productService.findAllById(Arrays.asList(1L, 2L))).thenReturn(ProductLookupModel.builder()
+				.products(Collections.singletonList(productModel)).missing(Collections.singletonList(2L)).build());
+
+		ResultActions response = mvc.perform(get(contextPath).param("ids", "1,2"));
+		response.andExpect(status().isOk()).andExpect(
+				content().json("{\"products\":[" + mapper.writeValueAsString(productModel) + "],\"missing\":[2]}"));
+
+	}
+
+	/**
+	 * Test stats OK
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_stats_OK() throws Exception {
+
+		when(productService.stats()).thenReturn(ProductStatsModel.builder().total(4).created(1).build());
+
+		ResultActions response = mvc.perform(get(contextPath + "/stats"));
+		response.andExpect(status().isOk()).andExpect(content().json("{\"total\":4,\"created\":1}"));
+
+	}
+
+	/**
+	 * Test stream all OK
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_streamAll_OK() throws Exception {
+
+		when(productService.writeAll(any(JsonGenerator.class))).thenAnswer(invocation -> {
+			JsonGenerator generator = invocation.getArgument(0);
+			generator.writeStartArray();
+			mapper.writeValue(generator, productModel);
+			generator.writeEndArray();
+			return 1L;
+		});
+
+		ResultActions response = mvc.perform(get(contextPath).param("stream", "true"));
+
+		mvc.perform(asyncDispatch(response.andReturn())).andExpect(status().isOk())
+				.andExpect(content().json("[" + mapper.writeValueAsString(productModel) + "]"));
+
+	}
+
+	/**
+	 * Test stream by id not found
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_streamById_not_found() throws Exception {
+
+		when(productService.writeById(any(Long.class), any(JsonGenerator.class))).thenReturn(false);
+
+		ResultActions response = mvc
+				.perform(get(contextPath + parameterId, productModel.getId()).param("stream", "true"));
+		response.andExpect(status().isNotFound());
+
+	}
+
 	/**
 	 * Test findById OK
 	 * 
@@ -254,6 +351,24 @@ public class ProductApiControllerTest {
 
 	}
 
+	/**
+	 * Test update version conflict
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_update_conflict() throws Exception {
+
+		when(productService.update(productModel)).thenThrow(new ConflictException(notExist));
+
+		String productModelJson = mapper.writeValueAsString(productModel);
+
+		ResultActions response = mvc.perform(put(contextPath).accept(MediaType.APPLICATION_JSON)
+				.content(productModelJson).contentType(MediaType.APPLICATION_JSON));
+		response.andExpect(status().isConflict());
+
+	}
+
 	/**
 	 * Test update product not found
 	 * 
@@ -272,6 +387,40 @@ public class ProductApiControllerTest {
 
 	}
 
+	/**
+	 * Test patch OK
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_patch_OK() throws Exception {
+
+		when(productService.patch(productModel.getId(), Collections.singletonMap("name", "T-shirt")))
+				.thenReturn(productModel);
+
+		ResultActions response = mvc.perform(patch(contextPath + parameterId, productModel.getId())
+				.content("{\"name\":\"T-shirt\"}").contentType("application/merge-patch+json"));
+		response.andExpect(status().isOk());
+
+	}
+
+	/**
+	 * Test patch bad request
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_patch_bad_request() throws Exception {
+
+		when(productService.patch(productModel.getId(), Collections.singletonMap("name", null)))
+				.thenThrow(new BadRequestException(notFound));
+
+		ResultActions response = mvc.perform(patch(contextPath + parameterId, productModel.getId())
+				.content("{\"name\":null}").contentType("application/merge-patch+json"));
+		response.andExpect(status().isBadRequest());
+
+	}
+
 	/**
 	 * Test deleteById OK
 	 * 
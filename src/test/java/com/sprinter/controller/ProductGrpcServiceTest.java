@@ -0,0 +1,377 @@
+package com.sprinter.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+
+import com.sprinter.ProductGrpcServer;
+import com.sprinter.grpc.DeleteByIdRequest;
+import com.sprinter.grpc.FindAllRequest;
+import com.sprinter.grpc.FindByIdRequest;
+import com.sprinter.grpc.Product;
+import com.sprinter.grpc.ProductApiGrpc;
+import com.sprinter.grpc.ProductPage;
+import com.sprinter.grpc.UpsertResult;
+import com.sprinter.model.ProductModel;
+import com.sprinter.service.ProductService;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Calls the gRPC API of a running server and compares it with the REST API
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:grpc", "sprinter.grpc.port=0",
+		"sprinter.admission.rate-limit.enabled=false" })
+public class ProductGrpcServiceTest {
+
+	static final int calls = 1000;
+	static final int catalogueSize = 2000;
+
+	@Autowired
+	private ProductGrpcServer productGrpcServer;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	private ManagedChannel channel;
+
+	private ProductApiGrpc.ProductApiBlockingStub blockingStub;
+
+	@BeforeEach
+	public void setUp() {
+		channel = NettyChannelBuilder.forAddress("localhost", productGrpcServer.getPort()).usePlaintext().build();
+		blockingStub = ProductApiGrpc.newBlockingStub(channel);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Test the single product operations and their status codes
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_crud() throws Exception {
+
+		Product created = blockingStub
+				.create(Product.newBuilder().setId(501).setName("Cap").setDescription("Blue cap").build());
+
+		assertEquals(0, created.getVersion());
+		assertEquals("Cap", blockingStub.findById(FindByIdRequest.newBuilder().setId(501).build()).getName());
+		assertEquals(Status.Code.ABORTED, code(() -> blockingStub.create(created)));
+
+		Product updated = blockingStub.update(created.toBuilder().setDescription("Red cap").build());
+
+		assertEquals(1, updated.getVersion());
+		assertEquals(Status.Code.ABORTED,
+				code(() -> blockingStub.update(created.toBuilder().setDescription("Green cap").build())));
+
+		blockingStub.deleteById(DeleteByIdRequest.newBuilder().setId(501).build());
+
+		assertEquals(Status.Code.NOT_FOUND,
+				code(() -> blockingStub.findById(FindByIdRequest.newBuilder().setId(501).build())));
+	}
+
+	/**
+	 * Test every product sent to the bidirectional stream gets its result in
+	 * order
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_upsert() throws Exception {
+
+		List<UpsertResult> results = new ArrayList<>();
+		CompletableFuture<Void> completed = new CompletableFuture<>();
+
+		StreamObserver<Product> requests = ProductApiGrpc.newStub(channel).upsert(new StreamObserver<UpsertResult>() {
+
+			@Override
+			public void onNext(UpsertResult result) {
+				results.add(result);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				completed.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onCompleted() {
+				completed.complete(null);
+			}
+
+		});
+
+		requests.onNext(Product.newBuilder().setId(601).setName("Scarf").setDescription("Wool scarf").build());
+		requests.onNext(Product.newBuilder().setId(601).setName("Scarf").setDescription("Silk scarf").build());
+		requests.onNext(
+				Product.newBuilder().setId(601).setName("Scarf").setDescription("Old scarf").setVersion(0).build());
+		requests.onCompleted();
+		completed.get(10, TimeUnit.SECONDS);
+
+		assertEquals(Arrays.asList(UpsertResult.Outcome.CREATED, UpsertResult.Outcome.UPDATED,
+				UpsertResult.Outcome.FAILED), Arrays.asList(results.get(0).getOutcome(), results.get(1).getOutcome(),
+						results.get(2).getOutcome()));
+		assertEquals("Silk scarf", results.get(1).getProduct().getDescription());
+
+		blockingStub.deleteById(DeleteByIdRequest.newBuilder().setId(601).build());
+	}
+
+	/**
+	 * Test a product without id is rejected when the server does not assign
+	 * ids
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_id_required() throws Exception {
+
+		Product withoutId = Product.newBuilder().setName("Belt").setDescription("Leather belt").build();
+
+		assertEquals(Status.Code.INVALID_ARGUMENT, code(() -> blockingStub.create(withoutId)));
+
+		List<UpsertResult> results = new ArrayList<>();
+		CompletableFuture<Void> completed = new CompletableFuture<>();
+
+		StreamObserver<Product> requests = ProductApiGrpc.newStub(channel).upsert(new StreamObserver<UpsertResult>() {
+
+			@Override
+			public void onNext(UpsertResult result) {
+				results.add(result);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				completed.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onCompleted() {
+				completed.complete(null);
+			}
+
+		});
+
+		requests.onNext(withoutId);
+		requests.onCompleted();
+		completed.get(10, TimeUnit.SECONDS);
+
+		assertEquals(UpsertResult.Outcome.FAILED, results.get(0).getOutcome());
+		assertEquals(Status.Code.NOT_FOUND,
+				code(() -> blockingStub.findById(FindByIdRequest.newBuilder().setId(0).build())));
+	}
+
+	/**
+	 * Test products sent after the caller cancelled the upsert stream are not
+	 * written
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_upsert_cancelled() throws Exception {
+
+		ProductService productService = mock(ProductService.class);
+		when(productService.update(any(ProductModel.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+		CancellableResponses responses = new CancellableResponses();
+		StreamObserver<Product> requests = new ProductGrpcService(productService, false).upsert(responses);
+
+		requests.onNext(Product.newBuilder().setId(701).setName("Tie").setDescription("Silk tie").build());
+		responses.cancel();
+		requests.onNext(Product.newBuilder().setId(702).setName("Tie").setDescription("Wool tie").build());
+
+		assertEquals(1, responses.results.size());
+		verify(productService, times(1)).update(any(ProductModel.class));
+	}
+
+	/**
+	 * Compares the latency of single product reads and the time to read the
+	 * whole catalogue over REST and gRPC
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_compare_with_rest() throws Exception {
+
+		for (long id = 10_001; id <= 10_000 + catalogueSize; id++)
+			blockingStub.create(Product.newBuilder().setId(id).setName("Product " + id).setDescription("d").build());
+
+		for (int round = 0; round < 2; round++) {
+
+			long[] rest = measure(id -> restTemplate.getForObject("/api/product/{id}", ProductModel.class, id));
+			long[] grpc = measure(id -> blockingStub.findById(FindByIdRequest.newBuilder().setId(id).build()));
+
+			log.info("findById over REST: {}us mean, {}us p99; over gRPC: {}us mean, {}us p99", rest[0], rest[1],
+					grpc[0], grpc[1]);
+		}
+
+		for (int round = 0; round < 3; round++) {
+
+			long start = System.nanoTime();
+			List<ProductModel> restCatalogue = restTemplate.exchange("/api/product?stream=true", HttpMethod.GET, null,
+					new ParameterizedTypeReference<List<ProductModel>>() {
+					}).getBody();
+			long restMillis = (System.nanoTime() - start) / 1_000_000;
+
+			start = System.nanoTime();
+			long previousId = Long.MIN_VALUE;
+			int streamed = 0;
+
+			for (Iterator<ProductPage> pages = blockingStub.findAll(FindAllRequest.getDefaultInstance()); pages
+					.hasNext();) {
+				for (Product product : pages.next().getProductsList()) {
+					assertTrue(product.getId() > previousId);
+					previousId = product.getId();
+					streamed++;
+				}
+			}
+
+			long grpcMillis = (System.nanoTime() - start) / 1_000_000;
+
+			log.info("Catalogue of {} products streamed over REST in {}ms, over gRPC in {}ms", streamed, restMillis,
+					grpcMillis);
+
+			assertEquals(restCatalogue.size(), streamed);
+			assertTrue(streamed >= catalogueSize);
+		}
+	}
+
+	/**
+	 * Returns the mean and the 99th percentile in microseconds
+	 */
+	private long[] measure(LongConsumer call) {
+
+		long[] nanos = new long[calls];
+
+		for (int i = 0; i < calls; i++) {
+			long start = System.nanoTime();
+			call.accept(10_001 + i % catalogueSize);
+			nanos[i] = System.nanoTime() - start;
+		}
+
+		Arrays.sort(nanos);
+
+		return new long[] { Arrays.stream(nanos).sum() / calls / 1000, nanos[calls * 99 / 100] / 1000 };
+	}
+
+	/**
+	 * Server side of an upsert call the test can cancel, it throws like the
+	 * real one when a result is sent after cancelling without a cancel handler
+	 */
+	private static class CancellableResponses extends ServerCallStreamObserver<UpsertResult> {
+
+		private final List<UpsertResult> results = new ArrayList<>();
+
+		private Runnable onCancelHandler;
+		private boolean cancelled;
+
+		void cancel() {
+
+			cancelled = true;
+
+			if (onCancelHandler != null)
+				onCancelHandler.run();
+		}
+
+		@Override
+		public void onNext(UpsertResult result) {
+
+			if (cancelled && onCancelHandler == null)
+				throw Status.CANCELLED.asRuntimeException();
+
+			if (!cancelled)
+				results.add(result);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+		}
+
+		@Override
+		public void onCompleted() {
+		}
+
+		@Override
+		public boolean isReady() {
+			return !cancelled;
+		}
+
+		@Override
+		public void setOnReadyHandler(Runnable onReadyHandler) {
+		}
+
+		@Override
+		public void disableAutoInboundFlowControl() {
+		}
+
+		@Override
+		public void disableAutoRequest() {
+		}
+
+		@Override
+		public void request(int count) {
+		}
+
+		@Override
+		public void setMessageCompression(boolean enable) {
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public void setOnCancelHandler(Runnable onCancelHandler) {
+			this.onCancelHandler = onCancelHandler;
+		}
+
+		@Override
+		public void setCompression(String compression) {
+		}
+
+	}
+
+	private static Status.Code code(Runnable call) {
+		return assertThrows(StatusRuntimeException.class, call::run).getStatus().getCode();
+	}
+
+}
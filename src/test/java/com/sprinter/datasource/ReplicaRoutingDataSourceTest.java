@@ -0,0 +1,200 @@
+package com.sprinter.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Every data source is its own in-memory H2 database holding its name, so
+ * the tests can tell which one served a query.
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ReplicaRoutingDataSourceTest {
+
+	static final int readers = 8;
+	static final int readsPerReader = 10;
+	static final int readMillis = 20;
+
+	private ReplicaRoutingDataSource routingDataSource;
+
+	@AfterEach
+	public void tearDown() {
+		ReplicaRoutingDataSource.setPrimaryRequired(false);
+		routingDataSource.close();
+	}
+
+	/**
+	 * Test read only transactions go to the replicas in turn and the rest to
+	 * the primary
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_routing() throws Exception {
+
+		routingDataSource = routing("routing", 2, 2);
+
+		assertEquals("primary", instance(false));
+		assertEquals("replica-0", instance(true));
+		assertEquals("replica-1", instance(true));
+		assertEquals("replica-0", instance(true));
+
+		ReplicaRoutingDataSource.setPrimaryRequired(true);
+
+		assertEquals("primary", instance(true));
+
+	}
+
+	/**
+	 * Test a replica failing its health check stops getting reads until it
+	 * passes again, and reads go to the primary when none is left
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_unhealthy_replica() throws Exception {
+
+		List<DataSource> replicas = replicas("health", 2, 2);
+		routingDataSource = new ReplicaRoutingDataSource(h2("health", "primary", 2), replicas, 1);
+		routingDataSource.afterPropertiesSet();
+
+		routingDataSource.checkReplicas();
+		assertEquals(2, routingDataSource.getHealthyReplicaCount());
+
+		((HikariDataSource) replicas.get(0)).close();
+		routingDataSource.checkReplicas();
+
+		assertEquals(1, routingDataSource.getHealthyReplicaCount());
+		assertEquals("replica-1", instance(true));
+		assertEquals("replica-1", instance(true));
+
+		((HikariDataSource) replicas.get(1)).close();
+		routingDataSource.checkReplicas();
+
+		assertEquals(0, routingDataSource.getHealthyReplicaCount());
+		assertEquals("primary", instance(true));
+
+	}
+
+	/**
+	 * Test read throughput grows with the replicas, each instance serves one
+	 * query at a time so four replicas should serve reads at least twice as
+	 * fast as one
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_read_throughput_scales_with_replicas() throws Exception {
+
+		routingDataSource = routing("scale-1", 1, 1);
+		long oneReplica = timeReads();
+		routingDataSource.close();
+
+		routingDataSource = routing("scale-4", 4, 1);
+		long fourReplicas = timeReads();
+
+		assertTrue(fourReplicas * 2 < oneReplica, "1 replica: " + oneReplica + " ms, 4 replicas: " + fourReplicas
+				+ " ms");
+
+	}
+
+	private long timeReads() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(readers);
+		List<Future<Set<String>>> results = new ArrayList<>();
+		long start = System.nanoTime();
+
+		for (int i = 0; i < readers; i++) {
+			results.add(executor.submit(() -> {
+				Set<String> instances = new HashSet<>();
+				for (int n = 0; n < readsPerReader; n++)
+					instances.add(readOnly().execute(status -> {
+						JdbcTemplate jdbcTemplate = new JdbcTemplate(routingDataSource);
+						jdbcTemplate.execute("call sleep(" + readMillis + ")");
+						return jdbcTemplate.queryForObject("select name from instance", String.class);
+					}));
+				return instances;
+			}));
+		}
+
+		for (Future<Set<String>> result : results)
+			assertTrue(result.get().stream().allMatch(name -> name.startsWith("replica-")));
+
+		executor.shutdown();
+
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	private String instance(boolean readOnly) {
+
+		TransactionTemplate transactionTemplate = readOnly ? readOnly()
+				: new TransactionTemplate(new DataSourceTransactionManager(routingDataSource));
+
+		return transactionTemplate.execute(status -> new JdbcTemplate(routingDataSource)
+				.queryForObject("select name from instance", String.class));
+	}
+
+	private TransactionTemplate readOnly() {
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(
+				new DataSourceTransactionManager(routingDataSource));
+		transactionTemplate.setReadOnly(true);
+
+		return transactionTemplate;
+	}
+
+	private static ReplicaRoutingDataSource routing(String test, int replicaCount, int poolSize) {
+
+		ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(h2(test, "primary", poolSize),
+				replicas(test, replicaCount, poolSize), 1);
+		routingDataSource.afterPropertiesSet();
+
+		return routingDataSource;
+	}
+
+	private static List<DataSource> replicas(String test, int replicaCount, int poolSize) {
+
+		List<DataSource> replicas = new ArrayList<>();
+
+		for (int i = 0; i < replicaCount; i++)
+			replicas.add(h2(test, "replica-" + i, poolSize));
+
+		return replicas;
+	}
+
+	private static DataSource h2(String test, String name, int poolSize) {
+
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl("jdbc:h2:mem:" + test + "-" + name + ";DB_CLOSE_DELAY=-1");
+		dataSource.setUsername("sa");
+		dataSource.setPoolName(test + "-" + name);
+		dataSource.setMaximumPoolSize(poolSize);
+
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table instance (name varchar(32))");
+		jdbcTemplate.update("insert into instance values (?)", name);
+		jdbcTemplate.execute("create alias sleep for 'java.lang.Thread.sleep(long)'");
+
+		return dataSource;
+	}
+
+}
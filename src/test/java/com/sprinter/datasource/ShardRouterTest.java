@@ -0,0 +1,105 @@
+package com.sprinter.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ShardRouterTest {
+
+	/**
+	 * Test sequential ids are spread evenly by the hash strategy
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_hash_strategy() throws Exception {
+
+		HashShardStrategy strategy = new HashShardStrategy(4);
+		int[] counts = new int[4];
+
+		for (long id = 1; id <= 40_000; id++)
+			counts[strategy.shardOf(id)]++;
+
+		for (int count : counts)
+			assertTrue(Math.abs(count - 10_000) < 500, "Shard sizes: " + Arrays.toString(counts));
+
+	}
+
+	/**
+	 * Test the range strategy places every id up to a bound on its shard
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_range_strategy() throws Exception {
+
+		RangeShardStrategy strategy = new RangeShardStrategy(new long[] { 100, 200 });
+
+		assertEquals(3, strategy.getShardCount());
+		assertArrayEquals(new int[] { 0, 0, 1, 1, 2 }, new int[] { strategy.shardOf(-5), strategy.shardOf(100),
+				strategy.shardOf(101), strategy.shardOf(200), strategy.shardOf(201) });
+		assertThrows(IllegalArgumentException.class, () -> {
+			new RangeShardStrategy(new long[] { 200, 100 });
+		});
+
+	}
+
+	/**
+	 * Test every shard runs its work with its shard selected and the results
+	 * come back in shard order
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_scatter() throws Exception {
+
+		ShardRouter shardRouter = new ShardRouter(new HashShardStrategy(3), 3);
+
+		try {
+
+			assertEquals(Arrays.asList(0, 1, 2), shardRouter.scatter(shard -> ShardRouter.currentShard()));
+			assertEquals(2, (int) shardRouter.on(2, ShardRouter::currentShard));
+			assertEquals(0, ShardRouter.currentShard());
+
+			Map<Integer, List<Long>> partitions = shardRouter.partition(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L),
+					Long::longValue);
+
+			partitions.forEach((shard, ids) -> ids.forEach(id -> assertEquals((int) shard, shardRouter.shardOf(id))));
+
+		} finally {
+			shardRouter.close();
+		}
+
+	}
+
+	/**
+	 * Test sorted lists are merged in order up to the limit
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_merge() throws Exception {
+
+		List<List<Long>> sorted = Arrays.asList(Arrays.asList(1L, 4L, 9L), Arrays.asList(2L, 3L),
+				Arrays.<Long>asList(), Arrays.asList(5L, 6L, 7L, 8L));
+
+		assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L),
+				ShardRouter.merge(sorted, Comparator.naturalOrder(), Integer.MAX_VALUE));
+		assertEquals(Arrays.asList(1L, 2L, 3L, 4L), ShardRouter.merge(sorted, Comparator.naturalOrder(), 4));
+
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.sprinter.deadline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs a query that sleeps on every row, far longer than the deadlines, on
+ * an embedded H2 database with a small pool
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+public class DeadlineDataSourceTest {
+
+	static final String SLOW_QUERY = "select sleep(1) from system_range(1, 5000)";
+	static final int poolSize = 2;
+	static final int requests = 8;
+	static final long timeoutMillis = 300;
+
+	private HikariDataSource pool;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private ScheduledThreadPoolExecutor scheduler;
+
+	private final LongAdder cancelled = new LongAdder();
+
+	@BeforeEach
+	public void setUp() {
+
+		pool = new HikariDataSource();
+		pool.setJdbcUrl("jdbc:h2:mem:deadline;DB_CLOSE_DELAY=-1");
+		pool.setUsername("sa");
+		pool.setMaximumPoolSize(poolSize);
+
+		jdbcTemplate = new JdbcTemplate(new DeadlineDataSource(pool));
+		jdbcTemplate.execute("create alias if not exists sleep for 'java.lang.Thread.sleep(long)'");
+
+		scheduler = new ScheduledThreadPoolExecutor(1);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		scheduler.shutdownNow();
+		pool.close();
+	}
+
+	/**
+	 * Test a statement still running at the deadline is cancelled
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_statement_cancelled() throws Exception {
+
+		assertThrows(QueryTimeoutException.class, () -> slowQuery(new Deadline(timeoutMillis, scheduler, cancelled)));
+
+		assertEquals(1, cancelled.sum());
+		assertEquals(1, jdbcTemplate.queryForObject("select 1", Integer.class));
+	}
+
+	/**
+	 * Test no statement is started once the deadline passed
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_expired_deadline() throws Exception {
+
+		Deadline deadline = new Deadline(1, scheduler, cancelled);
+		Thread.sleep(20);
+
+		assertThrows(QueryTimeoutException.class,
+				() -> Deadline.with(deadline, () -> jdbcTemplate.queryForObject("select 1", Integer.class)));
+	}
+
+	/**
+	 * Test the query timeout of a statement is kept within the time left
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_query_timeout() throws Exception {
+
+		Deadline deadline = new Deadline(2500, scheduler, cancelled);
+
+		assertEquals(3, DeadlineDataSource.queryTimeoutSeconds(deadline, 0));
+		assertEquals(2, DeadlineDataSource.queryTimeoutSeconds(deadline, 2));
+		assertEquals(3, DeadlineDataSource.queryTimeoutSeconds(deadline, 30));
+
+		deadline.close();
+	}
+
+	/**
+	 * Test more slow requests than pooled connections all end at their
+	 * deadline and leave the pool free for the requests after them
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_pool_not_exhausted() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(requests);
+		List<Future<DataAccessException>> futures = new ArrayList<>();
+
+		for (int i = 0; i < requests; i++)
+			futures.add(executor.submit(() -> {
+				Deadline deadline = new Deadline(timeoutMillis, scheduler, cancelled);
+				try {
+					slowQuery(deadline);
+					return null;
+				} catch (DataAccessException ex) {
+					return ex;
+				} finally {
+					deadline.close();
+				}
+			}));
+
+		for (Future<DataAccessException> future : futures)
+			assertTrue(future.get() instanceof QueryTimeoutException);
+
+		log.info("{} slow queries on {} connections, {} cancelled", requests, poolSize, cancelled.sum());
+
+		assertTrue(cancelled.sum() >= poolSize && cancelled.sum() <= requests);
+		assertEquals(1, jdbcTemplate.queryForObject("select 1", Integer.class));
+
+		executor.shutdown();
+	}
+
+	/**
+	 * Test the query timeout set for a deadline does not stay on the pooled
+	 * connection for the work after it, with or without a deadline
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_query_timeout_not_carried_over() throws Exception {
+
+		try (HikariDataSource singleConnection = new HikariDataSource()) {
+
+			singleConnection.setJdbcUrl("jdbc:h2:mem:deadline;DB_CLOSE_DELAY=-1");
+			singleConnection.setUsername("sa");
+			singleConnection.setMaximumPoolSize(1);
+
+			JdbcTemplate template = new JdbcTemplate(new DeadlineDataSource(singleConnection));
+
+			assertEquals(2, Deadline.with(new Deadline(2000, scheduler, cancelled), () -> queryTimeout(template)));
+			assertEquals(0, queryTimeout(template));
+			assertEquals(300, Deadline.with(new Deadline(300_000, scheduler, cancelled), () -> queryTimeout(template)));
+		}
+	}
+
+	private static int queryTimeout(JdbcTemplate template) {
+		return template.execute((ConnectionCallback<Integer>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				return statement.getQueryTimeout();
+			}
+		});
+	}
+
+	private List<Long> slowQuery(Deadline deadline) {
+		return Deadline.with(deadline, () -> jdbcTemplate.queryForList(SLOW_QUERY, Long.class));
+	}
+
+}
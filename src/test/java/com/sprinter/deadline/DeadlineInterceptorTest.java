@@ -0,0 +1,163 @@
+package com.sprinter.deadline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class DeadlineInterceptorTest {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private DeadlineInterceptor interceptor;
+
+	@BeforeEach
+	public void setUp() {
+		this.meterRegistry = new SimpleMeterRegistry();
+		this.interceptor = new DeadlineInterceptor(meterRegistry, 1000, 5000);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		interceptor.destroy();
+	}
+
+	/**
+	 * Test the deadline comes from the header capped to the maximum, else from
+	 * the endpoint, and is cleared once the request completes
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_deadline_started() throws Exception {
+
+		assertEquals(1000, timeoutMillis("plain", null));
+		assertEquals(300, timeoutMillis("plain", "300"));
+		assertEquals(5000, timeoutMillis("plain", "60000"));
+		assertEquals(20000, timeoutMillis("slow", null));
+		assertEquals(300, timeoutMillis("slow", "300"));
+		assertEquals(5, meterRegistry.get("sprinter.deadline.requests").tag("outcome", "started").functionCounter()
+				.count());
+	}
+
+	/**
+	 * Test an endpoint without default deadline runs without one unless the
+	 * caller sends it
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_endpoint_without_deadline() throws Exception {
+
+		MockHttpServletRequest request = request("unbounded", null);
+
+		assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), handler("unbounded")));
+		assertNull(Deadline.current());
+
+		assertEquals(300, timeoutMillis("unbounded", "300"));
+	}
+
+	/**
+	 * Test a timeout header that is not a positive number is rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_invalid_timeout() throws Exception {
+
+		for (String header : new String[] { "soon", "0", "-5" }) {
+
+			MockHttpServletResponse response = new MockHttpServletResponse();
+
+			assertFalse(interceptor.preHandle(request("plain", header), response, handler("plain")));
+			assertEquals(400, response.getStatus());
+			assertNull(Deadline.current());
+		}
+	}
+
+	/**
+	 * Test a request completed after its deadline is counted as exceeded
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_deadline_exceeded() throws Exception {
+
+		MockHttpServletRequest request = request("plain", "20");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		interceptor.preHandle(request, response, handler("plain"));
+		Thread.sleep(50);
+
+		assertTrue(Deadline.current().isExpired());
+
+		interceptor.afterCompletion(request, response, handler("plain"), null);
+
+		assertNull(Deadline.current());
+		assertEquals(1, meterRegistry.get("sprinter.deadline.requests").tag("outcome", "exceeded").functionCounter()
+				.count());
+	}
+
+	private long timeoutMillis(String endpoint, String header) throws Exception {
+
+		MockHttpServletRequest request = request(endpoint, header);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, handler(endpoint)));
+
+		Deadline deadline = Deadline.current();
+
+		assertNotNull(deadline);
+
+		interceptor.afterCompletion(request, response, handler(endpoint), null);
+
+		assertNull(Deadline.current());
+
+		return deadline.getTimeoutMillis();
+	}
+
+	private static MockHttpServletRequest request(String endpoint, String header) {
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/" + endpoint);
+
+		if (header != null)
+			request.addHeader(DeadlineInterceptor.TIMEOUT_HEADER, header);
+
+		return request;
+	}
+
+	private static HandlerMethod handler(String endpoint) throws Exception {
+		return new HandlerMethod(new Endpoints(), Endpoints.class.getMethod(endpoint));
+	}
+
+	public static class Endpoints {
+
+		public void plain() {
+		}
+
+		@RequestTimeout("20000")
+		public void slow() {
+		}
+
+		@RequestTimeout("0")
+		public void unbounded() {
+		}
+
+	}
+
+}
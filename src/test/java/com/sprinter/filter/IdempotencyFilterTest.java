@@ -0,0 +1,329 @@
+package com.sprinter.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import com.sprinter.limiter.AdmissionControlInterceptor;
+
+/**
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class IdempotencyFilterTest {
+
+	private IdempotencyFilter idempotencyFilter;
+
+	private final AtomicInteger executions = new AtomicInteger();
+
+	@BeforeEach
+	public void setUp() {
+		this.idempotencyFilter = new IdempotencyFilter(Duration.ofMinutes(1), 100, 1024, 5000);
+	}
+
+	/**
+	 * Test a repeated request is answered with the recorded response
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_replayed() throws Exception {
+
+		MockHttpServletResponse first = post("key-1", "client-1", "{\"name\":\"Hat\"}", created(null));
+		MockHttpServletResponse second = post("key-1", "client-1", "{\"name\":\"Hat\"}", created(null));
+
+		assertEquals(1, executions.get());
+		assertEquals(201, second.getStatus());
+		assertEquals(first.getContentAsString(), second.getContentAsString());
+		assertEquals("application/json", second.getContentType());
+		assertEquals("/api/product/1", second.getHeader("Location"));
+		assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+		assertEquals("true", second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+	}
+
+	/**
+	 * Test a key is scoped to its client and cannot be reused for a different
+	 * request
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_key_scope() throws Exception {
+
+		post("key-1", "client-1", "{\"name\":\"Hat\"}", created(null));
+
+		assertEquals(422, post("key-1", "client-1", "{\"name\":\"Cap\"}", created(null)).getStatus());
+		assertEquals(201, post("key-1", "client-2", "{\"name\":\"Cap\"}", created(null)).getStatus());
+		assertEquals(2, executions.get());
+	}
+
+	/**
+	 * Test a failed request is not recorded so its retry runs again
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_failure_not_recorded() throws Exception {
+
+		HttpServlet failing = new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException {
+				executions.incrementAndGet();
+				res.sendError(409);
+			}
+		};
+
+		assertEquals(409, post("key-1", "client-1", "{}", failing).getStatus());
+		assertEquals(201, post("key-1", "client-1", "{}", created(null)).getStatus());
+		assertEquals(2, executions.get());
+	}
+
+	/**
+	 * Test a duplicate arriving while the first request runs waits for its
+	 * response instead of running again
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_in_flight_duplicate_waits() throws Exception {
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		Future<MockHttpServletResponse> first = executor
+				.submit(() -> post("key-1", "client-1", "{}", created(() -> {
+					started.countDown();
+					release.await();
+				})));
+
+		started.await();
+
+		Future<MockHttpServletResponse> second = executor.submit(() -> post("key-1", "client-1", "{}", created(null)));
+		Future<MockHttpServletResponse> third = executor.submit(() -> post("key-1", "client-1", "{}", created(null)));
+
+		TimeUnit.MILLISECONDS.sleep(100);
+		release.countDown();
+
+		assertEquals(201, first.get().getStatus());
+		assertEquals(first.get().getContentAsString(), second.get().getContentAsString());
+		assertEquals(first.get().getContentAsString(), third.get().getContentAsString());
+		assertEquals(1, executions.get());
+
+		executor.shutdown();
+	}
+
+	/**
+	 * Test a request in flight keeps its key however many other keys are
+	 * recorded meanwhile
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_in_flight_not_evicted() throws Exception {
+
+		idempotencyFilter = new IdempotencyFilter(Duration.ofMinutes(1), 10, 1024, 5000);
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		Future<MockHttpServletResponse> first = executor
+				.submit(() -> post("key-1", "client-1", "{}", created(() -> {
+					started.countDown();
+					release.await();
+				})));
+
+		started.await();
+
+		for (int i = 0; i < 1000; i++)
+			post("other-" + i, "client-1", "{}", created(null));
+
+		Future<MockHttpServletResponse> second = executor.submit(() -> post("key-1", "client-1", "{}", created(null)));
+
+		TimeUnit.MILLISECONDS.sleep(100);
+		release.countDown();
+
+		assertEquals(first.get().getContentAsString(), second.get().getContentAsString());
+		assertEquals("true", second.get().getHeader(IdempotencyFilter.REPLAYED_HEADER));
+		assertEquals(1001, executions.get());
+
+		executor.shutdown();
+	}
+
+	/**
+	 * Test the body can be read with a read listener once the filter buffered
+	 * it
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_non_blocking_read() throws Exception {
+
+		ServletInputStream body = new FinishedInputStream("{\"name\":\"Hat\"}".getBytes(StandardCharsets.UTF_8));
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/product") {
+
+			@Override
+			public ServletInputStream getInputStream() {
+				return body;
+			}
+
+		};
+		request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, "key-1");
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		idempotencyFilter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException {
+
+				ServletInputStream inputStream = req.getInputStream();
+
+				inputStream.setReadListener(new ReadListener() {
+
+					@Override
+					public void onDataAvailable() throws IOException {
+
+						byte[] buffer = new byte[4];
+						int length;
+
+						while (inputStream.isReady() && (length = inputStream.read(buffer)) != -1)
+							read.write(buffer, 0, length);
+					}
+
+					@Override
+					public void onAllDataRead() {
+						res.setStatus(201);
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						res.setStatus(500);
+					}
+
+				});
+			}
+		}));
+
+		assertEquals(201, response.getStatus());
+		assertEquals("{\"name\":\"Hat\"}", read.toString(StandardCharsets.UTF_8.name()));
+	}
+
+	private MockHttpServletResponse post(String key, String clientId, String body, HttpServlet servlet)
+			throws Exception {
+
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/product");
+		request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+		request.addHeader(AdmissionControlInterceptor.CLIENT_ID_HEADER, clientId);
+		request.setContent(body.getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		idempotencyFilter.doFilter(request, response, new MockFilterChain(servlet));
+
+		return response;
+	}
+
+	/**
+	 * Echoes the request body with the number of the execution
+	 */
+	private HttpServlet created(Blocker blocker) {
+
+		return new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException {
+
+				int execution = executions.incrementAndGet();
+
+				if (blocker != null) {
+					try {
+						blocker.block();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+				}
+
+				res.setStatus(201);
+				res.setContentType("application/json");
+				res.setHeader("Location", "/api/product/1");
+				res.getWriter().write("{\"execution\":" + execution + ",\"body\":"
+						+ StreamUtils.copyToString(req.getInputStream(), StandardCharsets.UTF_8) + "}");
+			}
+		};
+	}
+
+	/**
+	 * Stream of a request whose body arrived whole, a read listener is told
+	 * at once that all data was read
+	 */
+	private static class FinishedInputStream extends ServletInputStream {
+
+		private final ByteArrayInputStream inputStream;
+
+		FinishedInputStream(byte[] body) {
+			this.inputStream = new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public int read() {
+			return inputStream.read();
+		}
+
+		@Override
+		public boolean isFinished() {
+			return inputStream.available() == 0;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			try {
+				readListener.onAllDataRead();
+			} catch (IOException ex) {
+				readListener.onError(ex);
+			}
+		}
+
+	}
+
+	private interface Blocker {
+
+		void block() throws InterruptedException;
+
+	}
+
+}
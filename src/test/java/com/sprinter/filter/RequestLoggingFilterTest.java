@@ -0,0 +1,184 @@
+package com.sprinter.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class RequestLoggingFilterTest {
+
+	private RequestLoggingFilter requestLoggingFilter;
+
+	@BeforeEach
+	public void setUp() {
+		this.requestLoggingFilter = new RequestLoggingFilter(10);
+	}
+
+	/**
+	 * Test correlation id is propagated
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_correlation_id_propagated() throws Exception {
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/product");
+		request.addHeader(RequestLoggingFilter.CORRELATION_ID_HEADER, "abc-123");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		String[] seen = new String[1];
+		requestLoggingFilter.doFilter(request, response,
+				new MockFilterChain(new HttpServlet() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void service(HttpServletRequest req, HttpServletResponse res) {
+						seen[0] = MDC.get(RequestLoggingFilter.CORRELATION_ID_KEY);
+					}
+				}));
+
+		assertEquals("abc-123", seen[0]);
+		assertEquals("abc-123", response.getHeader(RequestLoggingFilter.CORRELATION_ID_HEADER));
+		assertNull(MDC.get(RequestLoggingFilter.CORRELATION_ID_KEY));
+	}
+
+	/**
+	 * Test a streamed request is logged when it completes, with its
+	 * correlation id
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_async_request_logged_on_complete() throws Exception {
+
+		Logger logger = (Logger) LoggerFactory.getLogger(RequestLoggingFilter.class);
+		ListAppender<ILoggingEvent> appender = new ListAppender<>();
+		appender.start();
+		logger.addAppender(appender);
+
+		try {
+
+			MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/product/import");
+			request.setAsyncSupported(true);
+			request.addHeader(RequestLoggingFilter.CORRELATION_ID_HEADER, "abc-123");
+			MockHttpServletResponse response = new MockHttpServletResponse();
+
+			requestLoggingFilter.doFilter(request, response,
+					new MockFilterChain(new HttpServlet() {
+						private static final long serialVersionUID = 1L;
+
+						@Override
+						protected void service(HttpServletRequest req, HttpServletResponse res) {
+							req.startAsync();
+						}
+					}));
+
+			assertTrue(appender.list.isEmpty());
+			assertNull(MDC.get(RequestLoggingFilter.CORRELATION_ID_KEY));
+
+			response.setStatus(201);
+			request.getAsyncContext().complete();
+
+			assertEquals(1, appender.list.size());
+			assertTrue(appender.list.get(0).getFormattedMessage().contains("status=201"));
+			assertEquals("abc-123",
+					appender.list.get(0).getMDCPropertyMap().get(RequestLoggingFilter.CORRELATION_ID_KEY));
+			assertNull(MDC.get(RequestLoggingFilter.CORRELATION_ID_KEY));
+
+		} finally {
+
+			logger.detachAppender(appender);
+		}
+	}
+
+	/**
+	 * Test tasks run with the correlation id of the thread submitting them
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_correlation_id_in_tasks() throws Exception {
+
+		ExecutorService executor = MdcTaskWrapping.wrap(Executors.newSingleThreadExecutor());
+
+		try {
+
+			MDC.put(RequestLoggingFilter.CORRELATION_ID_KEY, "abc-123");
+			assertEquals("abc-123", executor.submit(() -> MDC.get(RequestLoggingFilter.CORRELATION_ID_KEY)).get());
+
+			MDC.remove(RequestLoggingFilter.CORRELATION_ID_KEY);
+			assertNull(executor.submit(() -> MDC.get(RequestLoggingFilter.CORRELATION_ID_KEY)).get());
+
+		} finally {
+
+			MDC.remove(RequestLoggingFilter.CORRELATION_ID_KEY);
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Test correlation id is generated
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_correlation_id_generated() throws Exception {
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		requestLoggingFilter.doFilter(new MockHttpServletRequest("GET", "/api/product"), response,
+				new MockFilterChain());
+
+		assertNotNull(response.getHeader(RequestLoggingFilter.CORRELATION_ID_HEADER));
+	}
+
+	/**
+	 * Test a correlation id with characters that could forge log lines is
+	 * replaced
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_correlation_id_rejected() throws Exception {
+
+		for (String correlationId : new String[] { "abc\r\nforged log line", "a b", "" }) {
+
+			MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/product");
+			request.addHeader(RequestLoggingFilter.CORRELATION_ID_HEADER, correlationId);
+			MockHttpServletResponse response = new MockHttpServletResponse();
+
+			requestLoggingFilter.doFilter(request, response, new MockFilterChain());
+
+			String generated = response.getHeader(RequestLoggingFilter.CORRELATION_ID_HEADER);
+
+			assertNotEquals(correlationId, generated);
+			assertTrue(RequestLoggingFilter.CORRELATION_ID_PATTERN.matcher(generated).matches());
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.sprinter.limiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class AdmissionControlInterceptorTest {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private HandlerMethod handler;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		this.meterRegistry = new SimpleMeterRegistry();
+		this.handler = new HandlerMethod(new Object(), Object.class.getMethod("toString"));
+	}
+
+	/**
+	 * Test rate limit per client
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_rate_limited() throws Exception {
+
+		AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(meterRegistry, true, 1, 2, 100,
+				new String[] { "127.0.0.1" }, 10, 1, 10, 1000);
+
+		assertEquals(200, admit(interceptor, "client-a").getStatus());
+		assertEquals(200, admit(interceptor, "client-a").getStatus());
+
+		MockHttpServletResponse rejected = admit(interceptor, "client-a");
+
+		assertEquals(429, rejected.getStatus());
+		assertEquals("1", rejected.getHeader("Retry-After"));
+		assertEquals(200, admit(interceptor, "client-b").getStatus());
+		assertEquals(1, meterRegistry.get("sprinter.admission.requests").tag("outcome", "rate_limited").counter()
+				.count());
+	}
+
+	/**
+	 * Test X-Client-Id is ignored unless sent by a trusted proxy, so callers
+	 * cannot get a fresh bucket by changing the header
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_rate_limited_untrusted_client_id() throws Exception {
+
+		AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(meterRegistry, true, 1, 2, 100,
+				new String[] { "10.0.0.1" }, 10, 1, 10, 1000);
+
+		assertEquals(200, admit(interceptor, "client-a").getStatus());
+		assertEquals(200, admit(interceptor, "client-b").getStatus());
+		assertEquals(429, admit(interceptor, "client-c").getStatus());
+
+		MockHttpServletRequest request = request("client-a");
+		request.setRemoteAddr("10.0.0.2");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request, response, handler));
+	}
+
+	/**
+	 * Test load shed when the concurrency limit is reached
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_concurrency_limited() throws Exception {
+
+		AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(meterRegistry, false, 1, 1, 100,
+				new String[0], 2, 1, 10, 1000);
+
+		MockHttpServletRequest first = request("client-a");
+		assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), handler));
+		assertTrue(interceptor.preHandle(request("client-a"), new MockHttpServletResponse(), handler));
+
+		MockHttpServletResponse rejected = new MockHttpServletResponse();
+		assertFalse(interceptor.preHandle(request("client-a"), rejected, handler));
+		assertEquals(503, rejected.getStatus());
+
+		interceptor.afterCompletion(first, new MockHttpServletResponse(), handler, null);
+		assertTrue(interceptor.preHandle(request("client-a"), new MockHttpServletResponse(), handler));
+	}
+
+	/**
+	 * Test AIMD limit backs off on slow or failed requests
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_limit_adapts() throws Exception {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 20, 1000);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(limiter.tryAcquire());
+			limiter.release(5000, true);
+		}
+
+		assertEquals(3, limiter.getLimit());
+
+		for (int i = 0; i < 50; i++) {
+			for (int j = 0; j < limiter.getLimit(); j++)
+				limiter.tryAcquire();
+			for (int j = limiter.getInFlight(); j > 0; j--)
+				limiter.release(10, true);
+		}
+
+		assertTrue(limiter.getLimit() > 3);
+	}
+
+	private MockHttpServletResponse admit(AdmissionControlInterceptor interceptor, String clientId) throws Exception {
+
+		MockHttpServletRequest request = request(clientId);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		if (interceptor.preHandle(request, response, handler))
+			interceptor.afterCompletion(request, response, handler, null);
+
+		return response;
+	}
+
+	private MockHttpServletRequest request(String clientId) {
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/product");
+		request.addHeader(AdmissionControlInterceptor.CLIENT_ID_HEADER, clientId);
+
+		return request;
+	}
+
+}
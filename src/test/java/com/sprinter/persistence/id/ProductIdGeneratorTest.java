@@ -0,0 +1,146 @@
+package com.sprinter.persistence.id;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.sprinter.ProductIdConfig;
+import com.sprinter.datasource.HashShardStrategy;
+import com.sprinter.datasource.ShardRouter;
+
+/**
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ProductIdGeneratorTest {
+
+	/**
+	 * Test ids of concurrent callers are unique and ids of every node differ
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_snowflake_unique() throws Exception {
+
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (long node = 0; node < 4; node++) {
+
+			SnowflakeIdGenerator generator = new SnowflakeIdGenerator(node);
+
+			for (int thread = 0; thread < 2; thread++) {
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 50_000; i++)
+						assertTrue(ids.add(generator.nextId()));
+				}));
+			}
+		}
+
+		for (Future<?> future : futures)
+			future.get();
+
+		executor.shutdown();
+
+		assertEquals(400_000, ids.size());
+		assertThrows(IllegalArgumentException.class, () -> {
+			new SnowflakeIdGenerator(1024);
+		});
+
+	}
+
+	/**
+	 * Test snowflake ids cannot be enabled without a node id of the instance
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_snowflake_node_id_required() throws Exception {
+
+		ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+				.withUserConfiguration(ProductIdConfig.class)
+				.withPropertyValues("sprinter.product.id-generation=snowflake");
+
+		contextRunner.run(context -> assertNotNull(context.getStartupFailure()));
+		contextRunner.withPropertyValues("sprinter.product.id-generation.node-id=7")
+				.run(context -> assertTrue(context.getBean(ProductIdGenerator.class) instanceof SnowflakeIdGenerator));
+
+	}
+
+	/**
+	 * Test ids keep growing when the sequence of a millisecond runs out and
+	 * when the clock goes back
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_snowflake_clock() throws Exception {
+
+		long[] millis = { SnowflakeIdGenerator.EPOCH_MILLIS + 1000 };
+		SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3, () -> millis[0]);
+
+		long last = generator.nextId();
+
+		assertEquals(1000L << 22 | 3L << 12, last);
+
+		for (int i = 0; i < 10_000; i++) {
+
+			if (i == 5000)
+				millis[0] -= 10;
+
+			long id = generator.nextId();
+
+			assertTrue(id > last);
+			assertEquals(3, id >> 12 & SnowflakeIdGenerator.MAX_NODE);
+			last = id;
+		}
+
+	}
+
+	/**
+	 * Test the sequence starts after the stored ids and every node takes its
+	 * own block with one sequence read
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_pooled_sequence() throws Exception {
+
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(
+				new DriverManagerDataSource("jdbc:h2:mem:pooled-sequence;DB_CLOSE_DELAY=-1", "sa", ""));
+		jdbcTemplate.execute("create table Product (id bigint primary key)");
+		jdbcTemplate.execute("insert into Product values (41)");
+
+		ShardRouter shardRouter = new ShardRouter(new HashShardStrategy(1), 1);
+		PooledSequenceIdGenerator first = new PooledSequenceIdGenerator(jdbcTemplate, shardRouter, "test_seq", 10);
+		PooledSequenceIdGenerator second = new PooledSequenceIdGenerator(jdbcTemplate, shardRouter, "test_seq", 10);
+
+		for (long id = 42; id < 52; id++)
+			assertEquals(id, first.nextId());
+
+		assertEquals(52, second.nextId());
+		assertEquals(62, first.nextId());
+		assertEquals(53, second.nextId());
+		assertEquals(72L, (long) jdbcTemplate.queryForObject("select next value for test_seq", Long.class));
+
+		jdbcTemplate.execute("drop all objects");
+
+	}
+
+}
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -114,4 +115,41 @@ public class ProductRepositoryTest {
 		assertFalse(productEntityDeleted.isPresent());
 
 	}
+
+	/**
+	 * Test count by name length
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_countByNameLength() throws Exception {
+
+		long counted = 0;
+
+		for (Object[] row : productRepository.countByNameLength())
+			counted += ((Number) row[1]).longValue();
+
+		assertEquals(productRepository.count(), counted);
+
+	}
+
+	/**
+	 * Test deleteById leaves a tombstone until it is purged
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_deleteById_tombstone() throws Exception {
+
+		long tombstones = productRepository.countTombstones();
+
+		productRepository.deleteById(productEntity.getId());
+		productRepository.flush();
+
+		assertFalse(productRepository.existsById(productEntity.getId()));
+		assertEquals(tombstones + 1, productRepository.countTombstones());
+		assertEquals(1, productRepository.purgeTombstones(Collections.singletonList(productEntity.getId())));
+		assertEquals(tombstones, productRepository.countTombstones());
+
+	}
 }
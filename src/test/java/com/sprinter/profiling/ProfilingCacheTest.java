@@ -0,0 +1,62 @@
+package com.sprinter.profiling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ProfilingCacheTest {
+
+	/**
+	 * Test lookups are recorded with their outcome
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_lookup_events() throws Exception {
+
+		ProfilingCache cache = new ProfilingCache(new ConcurrentMapCache("product"));
+		cache.put(1L, "T-shirt");
+
+		Path file = Files.createTempFile("profiling-cache", ".jfr");
+
+		try (Recording recording = new Recording()) {
+
+			recording.enable(CacheLookupEvent.class).withoutThreshold();
+			recording.start();
+
+			assertEquals("T-shirt", cache.get(1L, String.class));
+			assertEquals(null, cache.get(2L));
+
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+			assertEquals(2, events.size());
+			assertEquals("product", events.get(0).getString("cache"));
+			assertTrue(events.get(0).getBoolean("hit"));
+			assertFalse(events.get(1).getBoolean("hit"));
+
+		} finally {
+			Files.deleteIfExists(file);
+		}
+
+	}
+
+}
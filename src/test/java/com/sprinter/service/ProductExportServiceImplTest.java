@@ -0,0 +1,193 @@
+package com.sprinter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.sprinter.deadline.Deadline;
+import com.sprinter.mapper.ProductMapper;
+import com.sprinter.model.ExportFormat;
+import com.sprinter.persistence.entity.ProductEntity;
+import com.sprinter.persistence.repository.ProductRepository;
+import com.sprinter.service.impl.ProductExportServiceImpl;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = { ProductMapper.class })
+public class ProductExportServiceImplTest {
+
+	@Mock
+	private ProductRepository productRepository;
+
+	private ProductExportServiceImpl productExportService;
+
+	private ExecutorService executor;
+
+	private List<ProductEntity> productEntityList;
+
+	@BeforeEach
+	public void setUp() {
+
+		this.productEntityList = new ArrayList<>();
+		for (long id = 1; id <= 10; id++)
+			productEntityList.add(ProductEntity.builder().id(id).name("T-shirt " + id).description("Black").build());
+
+		lenient().when(productRepository.findMinId()).thenReturn(1L);
+		lenient().when(productRepository.findMaxId()).thenReturn(10L);
+		lenient().when(productRepository.count()).thenReturn(10L);
+		lenient().when(productRepository.findByIdBetweenOrderByIdAsc(anyLong(), anyLong())).thenAnswer(invocation -> {
+			long fromId = invocation.getArgument(0);
+			long toId = invocation.getArgument(1);
+			return productEntityList.stream().filter(p -> p.getId() >= fromId && p.getId() <= toId)
+					.collect(Collectors.toList());
+		});
+
+		this.executor = Executors.newFixedThreadPool(2);
+		this.productExportService = new ProductExportServiceImpl(productRepository, executor, 3, 2);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Test export NDJSON keeps id order across chunks
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_export_ndjson() throws Exception {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		long exported = productExportService.export(ExportFormat.NDJSON, out);
+
+		String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+
+		assertEquals(10, exported);
+		assertEquals(10, lines.length);
+		assertEquals("{\"id\":1,\"name\":\"T-shirt 1\",\"description\":\"Black\",\"version\":0}", lines[0]);
+		assertEquals("{\"id\":10,\"name\":\"T-shirt 10\",\"description\":\"Black\",\"version\":0}", lines[9]);
+	}
+
+	/**
+	 * Test export CSV to file
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_export_csv_file(@TempDir Path tempDir) throws Exception {
+
+		Path file = tempDir.resolve("products.csv");
+
+		long exported = productExportService.export(ExportFormat.CSV, file);
+
+		List<String> lines = Files.readAllLines(file);
+
+		assertEquals(10, exported);
+		assertEquals(11, lines.size());
+		assertEquals("id,name,description,version", lines.get(0));
+		assertEquals("5,\"T-shirt 5\",Black,0", lines.get(5));
+	}
+
+	/**
+	 * Test export to file keeps every product when chunks of the id range are
+	 * empty
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_export_ndjson_file_sparse_ids(@TempDir Path tempDir) throws Exception {
+
+		productEntityList
+				.add(ProductEntity.builder().id(1_000_000L).name("T-shirt 1000000").description("Black").build());
+		lenient().when(productRepository.findMaxId()).thenReturn(1_000_000L);
+		lenient().when(productRepository.count()).thenReturn(11L);
+
+		Path file = tempDir.resolve("products.ndjson");
+
+		long exported = productExportService.export(ExportFormat.NDJSON, file);
+
+		List<String> lines = Files.readAllLines(file);
+
+		assertEquals(11, exported);
+		assertEquals(11, lines.size());
+		assertEquals("{\"id\":1,\"name\":\"T-shirt 1\",\"description\":\"Black\",\"version\":0}", lines.get(0));
+		assertEquals("{\"id\":1000000,\"name\":\"T-shirt 1000000\",\"description\":\"Black\",\"version\":0}",
+				lines.get(10));
+	}
+
+	/**
+	 * Test every chunk is read within the deadline of the export
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_export_chunks_within_deadline() throws Exception {
+
+		Deadline deadline = mock(Deadline.class);
+		Set<Deadline> chunkDeadlines = ConcurrentHashMap.newKeySet();
+
+		lenient().when(productRepository.findByIdBetweenOrderByIdAsc(anyLong(), anyLong())).thenAnswer(invocation -> {
+			chunkDeadlines.add(Deadline.current());
+			return Collections.emptyList();
+		});
+
+		Deadline.with(deadline, () -> {
+			try {
+				return productExportService.export(ExportFormat.NDJSON, new ByteArrayOutputStream());
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+
+		assertEquals(Collections.singleton(deadline), chunkDeadlines);
+	}
+
+	/**
+	 * Test export empty catalogue
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_export_empty() throws Exception {
+
+		lenient().when(productRepository.findMinId()).thenReturn(null);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(0, productExportService.export(ExportFormat.NDJSON, out));
+		assertEquals(0, out.size());
+	}
+
+}
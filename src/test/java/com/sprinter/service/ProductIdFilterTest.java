@@ -0,0 +1,111 @@
+package com.sprinter.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.sprinter.service.impl.ProductIdFilter;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ProductIdFilterTest {
+
+	/**
+	 * Test every id passes until the filter is built
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_not_built() throws Exception {
+
+		ProductIdFilter productIdFilter = new ProductIdFilter(1000, 0.01);
+
+		assertTrue(productIdFilter.mightContain(42));
+
+	}
+
+	/**
+	 * Test added ids always pass and the false positive rate stays close to
+	 * the configured one
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_false_positive_rate() throws Exception {
+
+		ProductIdFilter productIdFilter = new ProductIdFilter(10_000, 0.01);
+		productIdFilter.startRebuild(5_000);
+
+		for (long id = 1; id <= 5_000; id++)
+			productIdFilter.addRebuilt(id);
+
+		productIdFilter.finishRebuild();
+
+		for (long id = 5_001; id <= 10_000; id++)
+			productIdFilter.add(id);
+
+		for (long id = 1; id <= 10_000; id++)
+			assertTrue(productIdFilter.mightContain(id));
+
+		int falsePositives = 0;
+
+		for (long id = 10_001; id <= 110_000; id++) {
+			if (productIdFilter.mightContain(id))
+				falsePositives++;
+		}
+
+		assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+
+	}
+
+	/**
+	 * Test ids added while the filter is rebuilt pass whichever filter they
+	 * land in, the rebuild only loads the ids stored before it read them
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_add_during_rebuild() throws Exception {
+
+		int ids = 50_000;
+		ProductIdFilter productIdFilter = new ProductIdFilter(2 * ids, 0.01);
+		AtomicLong stored = new AtomicLong();
+		AtomicBoolean adding = new AtomicBoolean(true);
+
+		productIdFilter.startRebuild(0);
+		productIdFilter.finishRebuild();
+
+		Thread rebuilder = new Thread(() -> {
+			while (adding.get()) {
+
+				productIdFilter.startRebuild(ids);
+
+				for (long id = 1, last = stored.get(); id <= last; id++)
+					productIdFilter.addRebuilt(id);
+
+				productIdFilter.finishRebuild();
+			}
+		});
+
+		rebuilder.start();
+
+		for (long id = 1; id <= ids; id++) {
+			stored.set(id);
+			productIdFilter.add(id);
+		}
+
+		adding.set(false);
+		rebuilder.join();
+
+		for (long id = 1; id <= ids; id++)
+			assertTrue(productIdFilter.mightContain(id), "Id " + id + " lost");
+
+	}
+
+}
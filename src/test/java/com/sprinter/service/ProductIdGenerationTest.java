@@ -0,0 +1,82 @@
+package com.sprinter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.sprinter.model.ProductModel;
+import com.sprinter.persistence.repository.ProductRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares the insert throughput of client and server assigned ids
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@Slf4j
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:id-generation",
+		"sprinter.product.id-generation=sequence" })
+public class ProductIdGenerationTest {
+
+	static final int products = 1000;
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	/**
+	 * Test products created without id get unique ids after the ids stored
+	 * when the sequence was created, the throughput of both is only logged
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_server_assigned_ids() throws Exception {
+
+		create(true, 1_000_000, products);
+		create(false, 0, products);
+
+		long clientNanos = create(true, 2_000_000, products);
+		long serverNanos = create(false, 0, products);
+
+		Set<Long> ids = new HashSet<>();
+
+		for (int i = 0; i < 10; i++) {
+
+			long id = productService.create(ProductModel.builder().name("Generated").description("d").build())
+					.getId();
+
+			assertTrue(id >= 1_000_000 + products);
+			assertTrue(ids.add(id));
+		}
+
+		log.info("Inserted {} products/s with client ids, {} products/s with server ids",
+				products * 1_000_000_000L / clientNanos, products * 1_000_000_000L / serverNanos);
+
+		assertEquals(4 * products + 14, productRepository.count());
+
+	}
+
+	private long create(boolean clientIds, long firstId, int count) {
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < count; i++) {
+			productService.create(ProductModel.builder().id(clientIds ? firstId + i : 0).name("Product " + i)
+					.description("d").build());
+		}
+
+		return System.nanoTime() - start;
+	}
+
+}
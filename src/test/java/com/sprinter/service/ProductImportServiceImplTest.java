@@ -0,0 +1,123 @@
+package com.sprinter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.TestPropertySource;
+
+import com.sprinter.model.ExportFormat;
+import com.sprinter.model.ImportReportModel;
+import com.sprinter.persistence.repository.ProductRepository;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@SpringBootTest
+@TestPropertySource(properties = "sprinter.import.batch-size=2")
+public class ProductImportServiceImplTest {
+
+	@Autowired
+	private ProductImportService productImportService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@AfterEach
+	public void tearDown() {
+		productRepository.deleteAll(productRepository.findAllById(Arrays.asList(101L, 102L, 103L, 104L, 105L, 106L)));
+	}
+
+	/**
+	 * Test import NDJSON with invalid records
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_import_ndjson() throws Exception {
+
+		String body = "{\"id\":101,\"name\":\"Cap\",\"description\":\"Red cap\"}\n"
+				+ "{\"id\":\"abc\",\"name\":\"Cap\",\"description\":\"Red cap\"}\n"
+				+ "{\"id\":102,\"name\":\"Socks\"}\n"
+				+ "{\"id\":103,\"name\":\"Scarf\",\"description\":\"Wool scarf\"}\n"
+				+ "{\"id\":101,\"name\":\"Cap\",\"description\":\"Blue cap\"}\n"
+				+ "{\"name\":\"Hat\",\"description\":\"Straw hat\"}\n";
+
+		ImportReportModel report = productImportService.importProducts(ExportFormat.NDJSON,
+				new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(6, report.getReceived());
+		assertEquals(3, report.getImported());
+		assertEquals(3, report.getFailed());
+		assertEquals(3, report.getErrors().size());
+		assertEquals(2, report.getErrors().get(0).getRecord());
+		assertEquals(6, report.getErrors().get(2).getRecord());
+		assertEquals("Blue cap", productRepository.findById(101L).get().getDescription());
+		assertFalse(productRepository.existsById(102L));
+		assertFalse(productRepository.existsById(0L));
+	}
+
+	/**
+	 * Test import CSV
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_import_csv() throws Exception {
+
+		String body = "id,name,description\n103,Scarf,\"Wool, scarf\"\n104,Gloves,Black gloves\n";
+
+		ImportReportModel report = productImportService.importProducts(ExportFormat.CSV,
+				new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(2, report.getImported());
+		assertEquals(0, report.getFailed());
+		assertEquals("Wool, scarf", productRepository.findById(103L).get().getDescription());
+	}
+
+	/**
+	 * Test an import that fails after writing a batch still clears the
+	 * product caches
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_import_failed_clears_caches() throws Exception {
+
+		cacheManager.getCache("missingProduct").put(106L, Boolean.TRUE);
+
+		String body = "{\"id\":105,\"name\":\"Scarf\",\"description\":\"Wool scarf\"}\n"
+				+ "{\"id\":106,\"name\":\"Gloves\",\"description\":\"Black gloves\"}\n";
+		InputStream aborted = new InputStream() {
+
+			@Override
+			public int read() throws IOException {
+				throw new IOException("Client aborted the upload");
+			}
+
+		};
+
+		assertThrows(IOException.class, () -> productImportService.importProducts(ExportFormat.NDJSON,
+				new SequenceInputStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), aborted)));
+		assertNull(cacheManager.getCache("missingProduct").get(106L));
+	}
+
+}
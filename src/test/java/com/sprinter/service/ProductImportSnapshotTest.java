@@ -0,0 +1,50 @@
+package com.sprinter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.sprinter.model.ExportFormat;
+
+/**
+ * Imports products while reads are served from the catalogue snapshot
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:import-snapshot",
+		"sprinter.catalogue.snapshot.enabled=true" })
+public class ProductImportSnapshotTest {
+
+	@Autowired
+	private ProductImportService productImportService;
+
+	@Autowired
+	private ProductService productService;
+
+	/**
+	 * Test imported products are found as soon as the import ends
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_import_published_to_snapshot() throws Exception {
+
+		productService.reloadSnapshot();
+
+		String body = "{\"id\":111,\"name\":\"Cap\",\"description\":\"Red cap\"}\n"
+				+ "{\"id\":1,\"name\":\"T-shirt\",\"description\":\"Imported T-shirt\"}\n";
+
+		productImportService.importProducts(ExportFormat.NDJSON,
+				new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals("Red cap", productService.findById(111).getDescription());
+		assertEquals("Imported T-shirt", productService.findById(1).getDescription());
+	}
+
+}
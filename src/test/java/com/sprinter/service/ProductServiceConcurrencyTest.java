@@ -0,0 +1,90 @@
+package com.sprinter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.sprinter.exception.ConflictException;
+import com.sprinter.model.ProductModel;
+import com.sprinter.persistence.repository.ProductRepository;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@SpringBootTest
+public class ProductServiceConcurrencyTest {
+
+	static final long productId = 201;
+	static final int threads = 4;
+	static final int incrementsPerThread = 25;
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@BeforeEach
+	public void setUp() {
+		productService.create(ProductModel.builder().id(productId).name("Counter").description("0").build());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		productRepository.deleteById(productId);
+	}
+
+	/**
+	 * Test concurrent read-modify-write updates lose nothing
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_concurrent_updates_no_lost_update() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Integer>> conflicts = new ArrayList<>();
+
+		for (int i = 0; i < threads; i++) {
+			conflicts.add(executor.submit(() -> {
+				int retries = 0;
+				for (int n = 0; n < incrementsPerThread; n++) {
+					while (true) {
+						ProductModel current = productService.findById(productId);
+						current.setDescription(String.valueOf(Long.parseLong(current.getDescription()) + 1));
+						try {
+							productService.update(current);
+							break;
+						} catch (ConflictException ex) {
+							retries++;
+						}
+					}
+				}
+				return retries;
+			}));
+		}
+
+		for (Future<Integer> future : conflicts)
+			future.get();
+
+		executor.shutdown();
+
+		ProductModel result = productService.findById(productId);
+
+		assertEquals(String.valueOf(threads * incrementsPerThread), result.getDescription());
+		assertEquals(threads * incrementsPerThread, result.getVersion().longValue());
+	}
+
+}
@@ -1,15 +1,25 @@
 package com.sprinter.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,14 +27,21 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import com.sprinter.exception.BadRequestException;
 import com.sprinter.exception.ConflictException;
 import com.sprinter.exception.NotFoundException;
 import com.sprinter.mapper.ProductMapper;
+import com.sprinter.model.ProductLookupModel;
 import com.sprinter.model.ProductModel;
+import com.sprinter.model.ProductStatsModel;
 import com.sprinter.persistence.entity.ProductEntity;
 import com.sprinter.persistence.repository.ProductRepository;
+import com.sprinter.service.impl.ProductIdFilter;
 import com.sprinter.service.impl.ProductServiceImpl;
 
 /**
@@ -119,6 +136,28 @@ public class ProductServiceImplTest {
 
 	}
 
+	/**
+	 * Test findAllById keeps request order and reports missing ids
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_findAllById() throws Exception {
+
+		ProductEntity otherEntity = ProductEntity.builder().id(3).name("Shorts").description("Black shorts").build();
+
+		lenient().when(productRepository.findAllById(Arrays.asList(3L, 2L, 1L)))
+				.thenReturn(Arrays.asList(productEntity, otherEntity));
+
+		ProductLookupModel result = productService.findAllById(Arrays.asList(3L, 2L, 1L, 3L));
+
+		assertEquals(2, result.getProducts().size());
+		assertEquals(3, result.getProducts().get(0).getId());
+		assertEquals(1, result.getProducts().get(1).getId());
+		assertEquals(Collections.singletonList(2L), result.getMissing());
+
+	}
+
 	/**
 	 * Test create OK
 	 * 
@@ -160,7 +199,7 @@ public class ProductServiceImplTest {
 	public void test_update_OK() throws Exception {
 
 		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
-		lenient().when(productRepository.save(productEntityModified)).thenReturn(productEntityModified);
+		lenient().when(productRepository.saveAndFlush(productEntityModified)).thenReturn(productEntityModified);
 
 		ProductModel result = productService
 				.update(ProductMapper.INSTANCE.productEntityToProductModel(productEntityModified));
@@ -169,6 +208,26 @@ public class ProductServiceImplTest {
 
 	}
 
+	/**
+	 * Test update with a stale version
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_update_stale_version() throws Exception {
+
+		productEntity.setVersion(3);
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
+
+		ProductModel staleModel = ProductMapper.INSTANCE.productEntityToProductModel(productEntityModified);
+		staleModel.setVersion(2L);
+
+		assertThrows(ConflictException.class, () -> {
+			productService.update(staleModel);
+		});
+
+	}
+
 	/**
 	 * Test update product not found
 	 * 
@@ -185,6 +244,59 @@ public class ProductServiceImplTest {
 
 	}
 
+	/**
+	 * Test patch OK
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_patch_OK() throws Exception {
+
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
+		lenient().when(productRepository.saveAndFlush(productEntityModified)).thenReturn(productEntityModified);
+
+		ProductModel result = productService.patch(productEntity.getId(),
+				Collections.singletonMap("description", "Yellow T-shirt"));
+
+		assertNotNull(result);
+		verify(productRepository).saveAndFlush(productEntityModified);
+
+	}
+
+	/**
+	 * Test patch that changes nothing does not write
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_patch_no_op() throws Exception {
+
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
+
+		ProductModel result = productService.patch(productEntity.getId(),
+				Collections.singletonMap("name", productEntity.getName()));
+
+		assertNotNull(result);
+		verify(productRepository, never()).saveAndFlush(any(ProductEntity.class));
+
+	}
+
+	/**
+	 * Test patch removing a required field
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_patch_bad_request() throws Exception {
+
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
+
+		assertThrows(BadRequestException.class, () -> {
+			productService.patch(productEntity.getId(), Collections.singletonMap("name", null));
+		});
+
+	}
+
 	/**
 	 * Test delete OK
 	 * 
@@ -216,4 +328,229 @@ public class ProductServiceImplTest {
 
 	}
 
+	/**
+	 * Test reads are served from the snapshot and writes are published to it
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_snapshot_mode() throws Exception {
+
+		lenient().when(productRepository.findAll()).thenReturn(Collections.singletonList(productEntity));
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
+		lenient().when(productRepository.saveAndFlush(any(ProductEntity.class))).thenReturn(productEntityModified);
+
+		productService.setSnapshotEnabled(true);
+		productService.reloadSnapshot();
+
+		assertTrue(productService.isServingSnapshot());
+		assertEquals("Black T-shirt", productService.findById(productEntity.getId()).getDescription());
+		assertThrows(NotFoundException.class, () -> {
+			productService.findById(2);
+		});
+
+		productService.update(ProductMapper.INSTANCE.productEntityToProductModel(productEntityModified));
+
+		assertEquals("Yellow T-shirt", productService.findAll().get(0).getDescription());
+		verify(productRepository, times(1)).findAll();
+		verify(productRepository, times(1)).findById(productEntity.getId());
+
+	}
+
+	/**
+	 * Test a reload that raced a write is not published, readers keep seeing
+	 * the write until the reload is retried
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_snapshot_reload_racing_write() throws Exception {
+
+		AtomicInteger loads = new AtomicInteger();
+		List<String> seenWhileRetrying = new ArrayList<>();
+
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
+		lenient().when(productRepository.saveAndFlush(any(ProductEntity.class))).thenReturn(productEntityModified);
+		lenient().when(productRepository.findAll()).thenAnswer(invocation -> {
+			switch (loads.incrementAndGet()) {
+			case 1:
+				return Collections.singletonList(productEntity);
+			case 2:
+				productService.update(ProductMapper.INSTANCE.productEntityToProductModel(productEntityModified));
+				return Collections.singletonList(productEntity);
+			default:
+				seenWhileRetrying.add(productService.findById(productEntity.getId()).getDescription());
+				return Collections.singletonList(productEntityModified);
+			}
+		});
+
+		productService.setSnapshotEnabled(true);
+		productService.reloadSnapshot();
+		productService.reloadSnapshot();
+
+		assertEquals(3, loads.get());
+		assertEquals(Collections.singletonList("Yellow T-shirt"), seenWhileRetrying);
+		assertEquals("Yellow T-shirt", productService.findById(productEntity.getId()).getDescription());
+
+	}
+
+	/**
+	 * Test stats follow the writes and the reconciliation
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_stats() throws Exception {
+
+		lenient().when(productRepository.count()).thenReturn(10L);
+		lenient().when(productRepository.countByNameLength())
+				.thenReturn(Collections.singletonList(new Object[] { 7, 10L }));
+		lenient().when(productRepository.countByDescriptionLength())
+				.thenReturn(Collections.singletonList(new Object[] { 40, 10L }));
+		lenient().when(productRepository.save(any(ProductEntity.class))).thenReturn(productEntity);
+
+		productService.reconcileStats();
+		productService.reconcileLengthStats();
+		productService.create(ProductMapper.INSTANCE.productEntityToProductModel(productEntity));
+
+		ProductStatsModel stats = productService.stats();
+
+		assertEquals(11, stats.getTotal());
+		assertEquals(1, stats.getCreated());
+		assertEquals(1, stats.getCreatedLastMinute());
+		assertEquals(11L, stats.getNameLengths().get("0-16"));
+		assertEquals(1L, stats.getDescriptionLengths().get("0-16"));
+		assertEquals(10L, stats.getDescriptionLengths().get("33-64"));
+
+	}
+
+	/**
+	 * Test a write made while the reconciliation queries run is kept
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_stats_write_during_reconcile() throws Exception {
+
+		lenient().when(productRepository.save(any(ProductEntity.class))).thenReturn(productEntity);
+		lenient().when(productRepository.count()).thenAnswer(invocation -> {
+			productService.create(ProductMapper.INSTANCE.productEntityToProductModel(productEntity));
+			return 10L;
+		});
+		lenient().when(productRepository.countByNameLength()).thenAnswer(invocation -> {
+			productService.create(ProductMapper.INSTANCE.productEntityToProductModel(productEntity));
+			return Collections.singletonList(new Object[] { 7, 10L });
+		});
+		lenient().when(productRepository.countByDescriptionLength())
+				.thenReturn(Collections.singletonList(new Object[] { 40, 10L }));
+
+		productService.reconcileStats();
+
+		assertEquals(11, productService.stats().getTotal());
+
+		productService.reconcileLengthStats();
+
+		assertEquals(12, productService.stats().getTotal());
+		assertEquals(11L, productService.stats().getNameLengths().get("0-16"));
+
+	}
+
+	/**
+	 * Test create over the tombstone of a deleted product
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_create_over_tombstone() throws Exception {
+
+		lenient().when(productRepository.existsById(productEntity.getId())).thenReturn(false);
+		lenient().when(productRepository.save(any(ProductEntity.class)))
+				.thenThrow(new DataIntegrityViolationException("Duplicate key")).thenReturn(productEntity);
+		lenient().when(productRepository.purgeTombstones(Collections.singletonList(productEntity.getId())))
+				.thenReturn(1);
+
+		ProductModel result = productService.create(ProductMapper.INSTANCE.productEntityToProductModel(productEntity));
+
+		assertNotNull(result);
+		verify(productRepository, times(2)).save(any(ProductEntity.class));
+
+	}
+
+	/**
+	 * Test ids rejected by the id filter do not reach the repository
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_findById_rejected_by_id_filter() throws Exception {
+
+		lenient().when(productRepository.count()).thenReturn(1L);
+		lenient().when(productRepository.findAllIds()).thenReturn(Collections.singletonList(productEntity.getId()));
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
+
+		productService.setProductIdFilter(new ProductIdFilter(1000, 0.01));
+		productService.rebuildIdFilter();
+
+		assertNotNull(productService.findById(productEntity.getId()));
+		assertThrows(NotFoundException.class, () -> {
+			productService.findById(2);
+		});
+		verify(productRepository, never()).findById(2L);
+
+	}
+
+	/**
+	 * Test a read that loaded a product before a concurrent delete does not
+	 * cache it after the delete evicted it
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_findById_racing_delete() throws Exception {
+
+		Cache productCache = new ConcurrentMapCache("product");
+		Cache missingProductCache = new ConcurrentMapCache("missingProduct");
+		productService.setProductCache(productCache);
+		productService.setMissingProductCache(missingProductCache);
+		AtomicBoolean deleted = new AtomicBoolean();
+
+		lenient().when(productRepository.findById(productEntity.getId())).thenAnswer(invocation -> {
+			if (deleted.compareAndSet(false, true))
+				productService.deleteById(productEntity.getId());
+			return Optional.of(productEntity);
+		});
+
+		assertNotNull(productService.findById(productEntity.getId()));
+		assertNull(productCache.get(productEntity.getId()));
+
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.empty());
+
+		assertThrows(NotFoundException.class, () -> {
+			productService.findById(productEntity.getId());
+		});
+		assertNotNull(missingProductCache.get(productEntity.getId()));
+
+	}
+
+	/**
+	 * Test a write evicts the product instead of caching the written model
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_update_evicts_cached() throws Exception {
+
+		Cache productCache = new ConcurrentMapCache("product");
+		productService.setProductCache(productCache);
+		productCache.put(productEntity.getId(), ProductMapper.INSTANCE.productEntityToProductModel(productEntity));
+
+		lenient().when(productRepository.findById(productEntity.getId())).thenReturn(Optional.of(productEntity));
+		lenient().when(productRepository.saveAndFlush(any())).thenReturn(productEntityModified);
+
+		productService.update(ProductMapper.INSTANCE.productEntityToProductModel(productEntityModified));
+
+		assertNull(productCache.get(productEntity.getId()));
+
+	}
+
 }
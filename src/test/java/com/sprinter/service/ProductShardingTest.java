@@ -0,0 +1,136 @@
+package com.sprinter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.sprinter.datasource.ShardRouter;
+import com.sprinter.model.ProductLookupModel;
+import com.sprinter.model.ProductModel;
+
+/**
+ * Runs the service against three embedded H2 databases, the seed products
+ * start on shard 0 and are moved at startup
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:sharding-0",
+		"sprinter.datasource.shard-urls=jdbc:h2:mem:sharding-1,jdbc:h2:mem:sharding-2" })
+public class ProductShardingTest {
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ShardRouter shardRouter;
+
+	/**
+	 * Test products are stored on the shard of their id only and reads find
+	 * them whatever their shard
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_products_routed_to_their_shard() throws Exception {
+
+		assertEquals(3, shardRouter.getShardCount());
+
+		for (long id = 301; id <= 320; id++)
+			productService.create(ProductModel.builder().id(id).name("Sharded " + id).description("d").build());
+
+		for (long id = 1; id <= 4; id++)
+			assertEquals(shardRouter.shardOf(id), shardOf(id));
+
+		for (long id = 301; id <= 320; id++) {
+			assertEquals(shardRouter.shardOf(id), shardOf(id));
+			assertEquals("Sharded " + id, productService.findById(id).getName());
+		}
+
+		ProductLookupModel lookup = productService.findAllById(Arrays.asList(305L, 306L, 320L, 999L));
+
+		assertEquals(Arrays.asList(305L, 306L, 320L),
+				lookup.getProducts().stream().map(ProductModel::getId).sorted().collect(Collectors.toList()));
+		assertEquals(Arrays.asList(999L), lookup.getMissing());
+
+		for (long id = 301; id <= 320; id++)
+			productService.deleteById(id);
+
+	}
+
+	/**
+	 * Test pages merged from every shard are in id order and continue after
+	 * the last id
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_page_merged_by_id() throws Exception {
+
+		for (long id = 401; id <= 430; id++)
+			productService.create(ProductModel.builder().id(id).name("Paged " + id).description("d").build());
+
+		List<Long> ids = new ArrayList<>();
+		long after = 400;
+
+		while (true) {
+
+			List<ProductModel> page = productService.findPage(after, 7);
+
+			if (page.isEmpty())
+				break;
+
+			page.forEach(productModel -> ids.add(productModel.getId()));
+			after = page.get(page.size() - 1).getId();
+		}
+
+		assertEquals(30, ids.size());
+		assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+		assertTrue(ids.stream().map(shardRouter::shardOf).distinct().count() == 3);
+
+		for (long id = 401; id <= 430; id++)
+			productService.deleteById(id);
+
+	}
+
+	/**
+	 * Looks the row up in every shard database directly, tombstones included
+	 */
+	private int shardOf(long id) throws Exception {
+
+		int found = -1;
+
+		for (int shard = 0; shard < 3; shard++) {
+
+			try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:sharding-" + shard, "sa", "");
+						PreparedStatement statement = connection
+							.prepareStatement("select count(*) from Product where id = ?")) {
+
+				statement.setLong(1, id);
+
+				try (ResultSet rs = statement.executeQuery()) {
+					rs.next();
+					if (rs.getLong(1) > 0) {
+						assertEquals(-1, found, "Product " + id + " on more than one shard");
+						found = shard;
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+}
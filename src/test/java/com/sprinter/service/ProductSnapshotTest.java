@@ -0,0 +1,114 @@
+package com.sprinter.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sprinter.model.ProductModel;
+import com.sprinter.persistence.entity.ProductEntity;
+import com.sprinter.service.impl.ProductSnapshot;
+
+/**
+ * 
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+public class ProductSnapshotTest {
+
+	private ProductSnapshot snapshot;
+
+	@BeforeEach
+	public void setUp() {
+		this.snapshot = ProductSnapshot.of(Arrays.asList(
+				ProductEntity.builder().id(3).name("Jeans").description("Blue jeans").version(1).build(),
+				ProductEntity.builder().id(1).name("T-shirt").description("Black T-shirt").build()));
+	}
+
+	/**
+	 * Test products are listed and found by id
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_find() throws Exception {
+
+		assertEquals(Arrays.asList(1L, 3L),
+				snapshot.findAll().stream().map(ProductModel::getId).collect(Collectors.toList()));
+		assertEquals("Blue jeans", snapshot.find(3).getDescription());
+		assertNull(snapshot.find(2));
+
+	}
+
+	/**
+	 * Test writes build a new snapshot and leave the current one untouched
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_copy_on_write() throws Exception {
+
+		ProductSnapshot inserted = snapshot
+				.with(ProductModel.builder().id(2).name("Socks").description("White socks").version(0L).build());
+		ProductSnapshot updated = inserted
+				.with(ProductModel.builder().id(3).name("Jeans").description("Black jeans").version(2L).build());
+		ProductSnapshot deleted = updated.without(1, 0);
+
+		assertEquals(2, snapshot.size());
+		assertNull(snapshot.find(2));
+		assertEquals("Blue jeans", snapshot.find(3).getDescription());
+
+		assertEquals(Arrays.asList(1L, 2L, 3L),
+				inserted.findAll().stream().map(ProductModel::getId).collect(Collectors.toList()));
+		assertEquals("Black jeans", updated.find(3).getDescription());
+		assertEquals(Arrays.asList(2L, 3L),
+				deleted.findAll().stream().map(ProductModel::getId).collect(Collectors.toList()));
+
+	}
+
+	/**
+	 * Test an older version never replaces a newer one
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_stale_write_ignored() throws Exception {
+
+		ProductSnapshot result = snapshot
+				.with(ProductModel.builder().id(3).name("Jeans").description("Old jeans").version(0L).build());
+
+		assertSame(snapshot, result);
+
+	}
+
+	/**
+	 * Test an update published after the delete of its product does not bring
+	 * it back, while creating it again does
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_deleted_not_restored() throws Exception {
+
+		ProductSnapshot deleted = snapshot.without(3, 1);
+
+		assertNull(deleted.find(3));
+		assertSame(deleted,
+				deleted.with(ProductModel.builder().id(3).name("Jeans").description("Old jeans").version(1L).build()));
+		assertSame(deleted,
+				deleted.with(ProductModel.builder().id(3).name("Jeans").description("New jeans").version(0L).build()));
+		assertEquals("New jeans", deleted.created(
+				ProductModel.builder().id(3).name("Jeans").description("New jeans").version(0L).build()).find(3)
+				.getDescription());
+		assertNull(snapshot.without(2, 0)
+				.with(ProductModel.builder().id(2).name("Socks").description("White socks").version(0L).build())
+				.find(2));
+
+	}
+
+}
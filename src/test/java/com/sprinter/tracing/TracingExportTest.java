@@ -0,0 +1,229 @@
+package com.sprinter.tracing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.google.protobuf.ByteString;
+import com.sprinter.model.ProductModel;
+import com.sprinter.service.ProductService;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceRequest;
+import io.opentelemetry.proto.collector.trace.v1.ExportTraceServiceResponse;
+import io.opentelemetry.proto.collector.trace.v1.TraceServiceGrpc;
+import io.opentelemetry.proto.trace.v1.Span;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+
+/**
+ * Sends traced requests to a running server and checks the spans exported
+ * to a collector stand-in listening in the test
+ *
+ * @author Álvaro Aglio Sánchez
+ *
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:tracing", "sprinter.grpc.port=0",
+		"sprinter.admission.rate-limit.enabled=false", "sprinter.tracing.enabled=true",
+		"sprinter.tracing.sampling-ratio=0.5", "sprinter.tracing.export.schedule-delay=100ms" })
+public class TracingExportTest {
+
+	/**
+	 * The ratio sampler records a trace when the low 64 bits of its id fall
+	 * under the ratio, so at 0.5 the first two ids are always recorded and
+	 * the last never
+	 */
+	static final String SAMPLED_TRACE_ID = "0af7651916cd43dd0000000000000001";
+	static final String CALLER_UNSAMPLED_TRACE_ID = "0af7651916cd43dd0000000000000002";
+	static final String UNSAMPLED_TRACE_ID = "4bf92f3577b34da67fffffffffffffff";
+	static final String SCHEDULED_TRACE_ID = "0af7651916cd43dd0000000000000003";
+	static final String PARENT_SPAN_ID = "00f067aa0ba902b7";
+
+	private static final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+
+	private static Server collector;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private OpenTelemetrySdk openTelemetry;
+
+	@Autowired
+	private Tracer tracer;
+
+	@Autowired
+	private ProductService productService;
+
+	@DynamicPropertySource
+	static void collectorEndpoint(DynamicPropertyRegistry registry) throws Exception {
+
+		collector = NettyServerBuilder.forPort(0).addService(new TraceServiceGrpc.TraceServiceImplBase() {
+
+			@Override
+			public void export(ExportTraceServiceRequest request,
+					StreamObserver<ExportTraceServiceResponse> responseObserver) {
+
+				request.getResourceSpansList().forEach(resourceSpans -> resourceSpans.getScopeSpansList()
+						.forEach(scopeSpans -> spans.addAll(scopeSpans.getSpansList())));
+
+				responseObserver.onNext(ExportTraceServiceResponse.getDefaultInstance());
+				responseObserver.onCompleted();
+			}
+
+		}).build().start();
+
+		registry.add("sprinter.tracing.otlp.endpoint", () -> "http://localhost:" + collector.getPort());
+	}
+
+	@AfterAll
+	public static void stopCollector() throws Exception {
+		collector.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Test a request continuing a sampled trace the ratio records exports its
+	 * server span under the caller span, and under it the controller, service,
+	 * cache and SQL spans
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_spans_exported() throws Exception {
+
+		assertEquals(HttpStatus.CREATED,
+				restTemplate.exchange("/api/product", HttpMethod.POST, new HttpEntity<>(
+						ProductModel.builder().id(801).name("Gloves").description("Wool gloves").build(),
+						traceparent(SAMPLED_TRACE_ID, "01")), String.class).getStatusCode());
+		assertEquals(HttpStatus.NOT_FOUND, restTemplate.exchange("/api/product/802", HttpMethod.GET,
+				new HttpEntity<>(traceparent(SAMPLED_TRACE_ID, "01")), String.class).getStatusCode());
+
+		Map<String, List<Span>> byName = flush(SAMPLED_TRACE_ID).stream().collect(Collectors.groupingBy(Span::getName));
+
+		Span server = byName.get("POST /api/product").get(0);
+		Span controller = byName.get("ProductApiController.create").get(0);
+		Span service = byName.get("ProductServiceImpl.create").get(0);
+
+		assertEquals(Span.SpanKind.SPAN_KIND_SERVER, server.getKind());
+		assertEquals(PARENT_SPAN_ID, hex(server.getParentSpanId()));
+		assertEquals(hex(server.getSpanId()), hex(controller.getParentSpanId()));
+		assertEquals(hex(controller.getSpanId()), hex(service.getParentSpanId()));
+		assertTrue(byName.get("INSERT").stream().anyMatch(span -> attribute(span, "db.statement").contains("product")));
+		assertTrue(byName.containsKey("GET /api/product/{id}"));
+		assertTrue(byName.containsKey("ProductServiceImpl.findById"));
+		assertTrue(byName.containsKey("cache get product"));
+		assertTrue(byName.containsKey("SELECT"));
+
+		Map<String, Span> spanById = byName.values().stream().flatMap(List::stream)
+				.collect(Collectors.toMap(span -> hex(span.getSpanId()), Function.identity()));
+
+		for (Span select : byName.get("SELECT"))
+			assertEquals(Span.SpanKind.SPAN_KIND_CLIENT, select.getKind());
+
+		for (Span span : spanById.values())
+			assertTrue(span == spanById.get(hex(server.getSpanId())) || hex(span.getParentSpanId())
+					.equals(PARENT_SPAN_ID) || spanById.containsKey(hex(span.getParentSpanId())));
+	}
+
+	/**
+	 * Test a request from a caller that did not sample its trace exports
+	 * nothing, and neither does one whose caller sampled a trace the ratio
+	 * does not record
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_sampling() throws Exception {
+
+		assertEquals(HttpStatus.OK, restTemplate.exchange("/api/product/1", HttpMethod.GET,
+				new HttpEntity<>(traceparent(CALLER_UNSAMPLED_TRACE_ID, "00")), String.class).getStatusCode());
+		assertEquals(HttpStatus.OK, restTemplate.exchange("/api/product/1", HttpMethod.GET,
+				new HttpEntity<>(traceparent(UNSAMPLED_TRACE_ID, "01")), String.class).getStatusCode());
+
+		assertTrue(flush(CALLER_UNSAMPLED_TRACE_ID).isEmpty());
+		assertTrue(flush(UNSAMPLED_TRACE_ID).isEmpty());
+	}
+
+	/**
+	 * Test a scheduled service method opens no span of its own, it would
+	 * start a root trace on every run
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_scheduled_not_traced() throws Exception {
+
+		Context parent = Context.root().with(io.opentelemetry.api.trace.Span.wrap(SpanContext.createFromRemoteParent(
+				SCHEDULED_TRACE_ID, PARENT_SPAN_ID, TraceFlags.getSampled(), TraceState.getDefault())));
+		io.opentelemetry.api.trace.Span span = tracer.spanBuilder("scheduled").setParent(parent).startSpan();
+
+		try (Scope scope = span.makeCurrent()) {
+			productService.reloadSnapshot();
+		} finally {
+			span.end();
+		}
+
+		List<String> names = flush(SCHEDULED_TRACE_ID).stream().map(Span::getName).collect(Collectors.toList());
+
+		assertTrue(names.contains("scheduled"));
+		assertTrue(names.stream().noneMatch(name -> name.startsWith("ProductServiceImpl.")));
+	}
+
+	private List<Span> flush(String traceId) {
+
+		openTelemetry.getSdkTracerProvider().forceFlush().join(10, TimeUnit.SECONDS);
+
+		return spans.stream().filter(span -> hex(span.getTraceId()).equals(traceId)).collect(Collectors.toList());
+	}
+
+	private static HttpHeaders traceparent(String traceId, String flags) {
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("traceparent", "00-" + traceId + "-" + PARENT_SPAN_ID + "-" + flags);
+
+		return headers;
+	}
+
+	private static String attribute(Span span, String key) {
+		return span.getAttributesList().stream().filter(attribute -> attribute.getKey().equals(key))
+				.map(attribute -> attribute.getValue().getStringValue()).findFirst().orElse("");
+	}
+
+	private static String hex(ByteString bytes) {
+
+		StringBuilder hex = new StringBuilder();
+
+		for (byte b : bytes.toByteArray())
+			hex.append(String.format("%02x", b));
+
+		return hex.toString();
+	}
+
+}